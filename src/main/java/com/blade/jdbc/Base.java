@@ -1,15 +1,28 @@
 package com.blade.jdbc;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.sql.DataSource;
 
+import org.sql2o.Connection;
+import org.sql2o.Query;
 import org.sql2o.Sql2o;
 
+import com.blade.jdbc.ds.ReplicaRouter;
+import com.blade.jdbc.ds.RoutingStrategy;
+import com.blade.jdbc.ds.ShardRouter;
+import com.blade.jdbc.ds.ShardStrategy;
+import com.blade.jdbc.tx.UnitOfWork;
+
 public final class Base {
 
 	public static Map<String, Sql2o> sql2oMap = new HashMap<String, Sql2o>(8);
+	
+	public static Map<String, ReplicaRouter> routerMap = new HashMap<String, ReplicaRouter>(8);
+	
+	public static Map<String, ShardRouter> shardMap = new HashMap<String, ShardRouter>(8);
 
 	public static void open(String url, String user, String password) {
 		sql2oMap.put(Const.DEFAULT_DB_NAME, new Sql2o(url, user, password));
@@ -23,6 +36,63 @@ public final class Base {
 		sql2oMap.put(dbName, new Sql2o(dataSource));
 	}
 
+	/**
+	 * Opens a database with read replicas: reads of {@link Model} go to the replicas, writes and
+	 * transactions to the primary.
+	 */
+	public static ReplicaRouter open(String dbName, DataSource primary, List<DataSource> replicas, RoutingStrategy strategy) {
+		Sql2o sql2o = new Sql2o(primary);
+		ReplicaRouter router = new ReplicaRouter(sql2o, replicas, strategy);
+		sql2oMap.put(dbName, sql2o);
+		routerMap.put(dbName, router);
+		return router;
+	}
+	
+	/**
+	 * Declares a logical database split over shards that were opened under their own names.
+	 * {@link Model}s of the logical database are routed to a shard by their shard key.
+	 */
+	public static ShardRouter openSharded(String dbName, ShardStrategy strategy) {
+		for (String shard : strategy.shards()) {
+			if (null == sql2oMap.get(shard)) {
+				throw new IllegalArgumentException("Shard " + shard + " of " + dbName + " is not open");
+			}
+		}
+		ShardRouter router = new ShardRouter(strategy);
+		shardMap.put(dbName, router);
+		return router;
+	}
+	
+	public static ShardRouter shardRouter(String dbName) {
+		return shardMap.get(dbName);
+	}
+	
+	/**
+	 * Opens a connection for a read: the one of the running unit of work, if any, otherwise one
+	 * on a replica if the database has healthy ones.
+	 */
+	public static Connection openForRead(String dbName) {
+		UnitOfWork work = UnitOfWork.current();
+		if (null != work) {
+			return work.connection(dbName, database(dbName));
+		}
+		ReplicaRouter router = routerMap.get(dbName);
+		if (null == router) {
+			return database(dbName).openLazy();
+		}
+		return router.openForRead();
+	}
+
+	/**
+	 * Notes a write of the calling thread, so that its next reads see it.
+	 */
+	public static void recordWrite(String dbName) {
+		ReplicaRouter router = routerMap.get(dbName);
+		if (null != router) {
+			router.recordWrite();
+		}
+	}
+
 	public static Sql2o database() {
 		return sql2oMap.get(Const.DEFAULT_DB_NAME);
 	}
@@ -32,11 +102,22 @@ public final class Base {
 	}
 	
 	public static void execute(String sql) {
-		database().open().createQuery(sql).executeUpdate();
+		execute(Const.DEFAULT_DB_NAME, sql);
 	}
 	
 	public static void execute(String dbName, String sql) {
-		database(dbName).open().createQuery(sql).executeUpdate();
+		UnitOfWork work = UnitOfWork.current();
+		Query query;
+		if (null != work) {
+			query = work.connection(dbName, database(dbName)).createQuery(sql);
+		} else {
+			query = database(dbName).openLazy().createQuery(sql);
+		}
+		try {
+			query.executeUpdate();
+		} finally {
+			query.close();
+		}
 	}
 	
 }
@@ -1,26 +1,34 @@
 package com.blade.jdbc;
 
 import java.io.Serializable;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sql2o.Connection;
+import org.sql2o.Deadline;
 import org.sql2o.Query;
 import org.sql2o.Sql2o;
 
 import com.blade.jdbc.annotation.Table;
 import com.blade.jdbc.dialect.DefaultDialect;
 import com.blade.jdbc.dialect.Dialect;
+import com.blade.jdbc.ds.ReplicaRouter;
+import com.blade.jdbc.ds.ShardRouter;
 import com.blade.jdbc.exception.DBException;
 import com.blade.jdbc.kit.QueryKit;
 import com.blade.jdbc.tx.AtomTx;
+import com.blade.jdbc.tx.UnitOfWork;
 
 @SuppressWarnings("unchecked")
 public class Model extends HashMap<String, Object> {
@@ -31,6 +39,8 @@ public class Model extends HashMap<String, Object> {
 
 	private Class<? extends Model> clazz;
 	
+	private String dbName = Const.DEFAULT_DB_NAME;
+	
 	private Sql2o sql2o;
 	
 	private Connection connection;
@@ -47,16 +57,40 @@ public class Model extends HashMap<String, Object> {
 	
 	private String order;
 	
+	private long timeoutMillis;
+	
+	// set while this model runs one shard's part of a scattered read
+	private Connection readConnection;
+	
 	public Model() {
 		this.clazz = this.getClass();
 		this.sql2o = Base.database();
 	}
 	
 	public Model db(String name){
-		this.sql2o = Base.database();
+		Sql2o sql2o = Base.database(name);
+		if (sql2o != this.sql2o && null != this.connection) {
+			// the lazy write connection belongs to the previous database
+			this.connection.close();
+			this.connection = null;
+		}
+		this.dbName = name;
+		this.sql2o = sql2o;
 		return this;
 	}
 	
+	/**
+	 * Pins this model of a sharded database to the shard of a key, for transactions or batches
+	 * that must stay on one shard.
+	 */
+	public Model shard(Object key) {
+		ShardRouter router = this.shardRouter();
+		if (null == router) {
+			throw new DBException("Database " + this.dbName + " is not sharded");
+		}
+		return this.db(router.shardFor(key));
+	}
+	
 	public Model where(String name, Object value) {
 		int index = params.size() + 1;
 		if(name.indexOf('?') != -1){
@@ -109,6 +143,23 @@ public class Model extends HashMap<String, Object> {
 	}
 	
 	public <K> K save() {
+		ShardRouter router = this.shardRouter();
+		if (null != router) {
+			Object key = this.get(this.shardKey());
+			if (null == key) {
+				throw new DBException("Missing shard key " + this.shardKey() + " of " + this.table());
+			}
+			Model model = this.onShard(router.shardFor(key));
+			K k;
+			try {
+				k = model.save();
+			} finally {
+				model.releaseWrite();
+			}
+			this.clear();
+			return k;
+		}
+		
 		String sql = dialect.getSaveSql(this);
 		LOGGER.debug("Preparing\t=> {}", sql);
 		
@@ -116,23 +167,26 @@ public class Model extends HashMap<String, Object> {
 			LOGGER.debug("Parameters\t=> {}", Arrays.toString(this.values().toArray()));
 		}
 		
-		if(null == this.connection){
-			this.connection = sql2o.open();
+		Query query = this.createQuery(this.openForWrite(), sql);
+		K k;
+		try {
+			Collection<Object> vlaues = this.values();
+			Object[] paramValues = vlaues.toArray(new Object[vlaues.size()]);
+			query.withParams(paramValues);
+			k = (K) query.executeUpdate().getKey();
+		} finally {
+			query.close();
 		}
-		
-		this.query = connection.createQuery(sql);
-		Collection<Object> vlaues = this.values();
-		Object[] paramValues = vlaues.toArray(new Object[vlaues.size()]);
-		this.query.withParams(paramValues);
-		K k = (K) this.query.executeUpdate().getKey();
+		Base.recordWrite(dbName);
 		this.clear();
 		return k;
 	}
 	
 	public void addToBatch(){
+		this.requireSingleDatabase();
 		if(null == query){
 			String sql = dialect.getSaveSql(this);
-			query = sql2o.beginTransaction().createQuery(sql);
+			query = this.createQuery(sql2o.beginTransaction(), sql);
 		}
 		Collection<Object> vlaues = this.values();
 		Object[] paramValues = vlaues.toArray(new Object[vlaues.size()]);
@@ -144,13 +198,33 @@ public class Model extends HashMap<String, Object> {
 		if(null != query){
 			int[] result = query.executeBatch().getBatchResult();
 	        query.getConnection().commit();
+	        Base.recordWrite(dbName);
 	        this.clear();
 	        return result;
 		}
 		return null;
 	}
 	
+	/**
+	 * On a sharded database this updates the shard of the key when the where clause has it as an
+	 * equality, otherwise every shard, one at a time on the calling thread. A failing shard stops
+	 * the ones after it, those before keep their changes unless a transaction spans them.
+	 */
 	public int update() {
+		ShardRouter router = this.shardRouter();
+		if (null != router) {
+			int result = 0;
+			for (Model model : this.onShards(router)) {
+				try {
+					result += model.update();
+				} finally {
+					model.releaseWrite();
+				}
+			}
+			this.clear();
+			return result;
+		}
+		
 		String sql = dialect.getUpdateSql(this);
 		LOGGER.debug("Preparing\t=> {}", sql);
 		
@@ -170,18 +244,21 @@ public class Model extends HashMap<String, Object> {
 			LOGGER.debug("Parameters\t=> {}", Arrays.toString(args));
 		}
 		
-		if(null == this.connection){
-			this.connection = sql2o.open();
-		}
-		Query query = this.connection.createQuery(sql);
-		List<Object> vlaues = new ArrayList<Object>(this.values());
-		if (!this.params.isEmpty()) {
-			vlaues.addAll(this.params.values());
+		Query query = this.createQuery(this.openForWrite(), sql);
+		int result;
+		try {
+			List<Object> vlaues = new ArrayList<Object>(this.values());
+			if (!this.params.isEmpty()) {
+				vlaues.addAll(this.params.values());
+			}
+			
+			Object[] paramValues = vlaues.toArray(new Object[vlaues.size()]);
+			query.withParams(paramValues);
+			result = query.executeUpdate().getResult();
+		} finally {
+			query.close();
 		}
-		
-		Object[] paramValues = vlaues.toArray(new Object[vlaues.size()]);
-		query.withParams(paramValues);
-		int result = query.executeUpdate().getResult();
+		Base.recordWrite(dbName);
 		this.clear();
 		return result;
 	}
@@ -190,7 +267,24 @@ public class Model extends HashMap<String, Object> {
 		
 	}
 
+	/**
+	 * Deletes on the shards like {@link #update()}, one at a time.
+	 */
 	public int delete(){
+		ShardRouter router = this.shardRouter();
+		if (null != router) {
+			int result = 0;
+			for (Model model : this.onShards(router)) {
+				try {
+					result += model.delete();
+				} finally {
+					model.releaseWrite();
+				}
+			}
+			this.clear();
+			return result;
+		}
+		
 		String sql = dialect.getDeleteSql(this);
 		LOGGER.debug("Preparing\t=> {}", sql);
 		
@@ -198,34 +292,87 @@ public class Model extends HashMap<String, Object> {
 			LOGGER.debug("Parameters\t=> {}", Arrays.toString(this.params.values().toArray()));
 		}
 		
-		if(null == this.connection){
-			this.connection = sql2o.open();
-		}
-		Query query = this.connection.createQuery(sql);
-		
-		List<Object> vlaues = new ArrayList<Object>(this.values());
-		if (!this.params.isEmpty()) {
-			vlaues.addAll(this.params.values());
+		Query query = this.createQuery(this.openForWrite(), sql);
+		int result;
+		try {
+			List<Object> vlaues = new ArrayList<Object>(this.values());
+			if (!this.params.isEmpty()) {
+				vlaues.addAll(this.params.values());
+			}
+			
+			Object[] paramValues = vlaues.toArray(new Object[vlaues.size()]);
+			query.withParams(paramValues);
+			result = query.executeUpdate().getResult();
+		} finally {
+			query.close();
 		}
-		
-		Object[] paramValues = vlaues.toArray(new Object[vlaues.size()]);
-		query.withParams(paramValues);
-		int result = query.executeUpdate().getResult();
+		Base.recordWrite(dbName);
 		this.clear();
 		return result;
 	}
 	
+	/**
+	 * Runs the work in a transaction. Its connection is bound to the thread for the duration, so
+	 * every model operation inside uses it; a transaction started inside another one joins it.
+	 */
 	public void tx(AtomTx atomTx){
-		this.connection = sql2o.beginTransaction();
+		this.requireSingleDatabase();
+		UnitOfWork work = UnitOfWork.begin();
+		// reads inside the transaction must see its writes
+		ReplicaRouter.enterPrimaryScope();
+		Connection connection = null;
+		boolean started = false;
+		boolean committed = false;
 		try {
+			connection = work.connection(dbName, sql2o);
+			started = this.beginTransaction(connection);
 			atomTx.execute();
-			this.connection.commit();
+			if (started) {
+				connection.commit(false);
+				Base.recordWrite(dbName);
+			}
+			committed = true;
 			this.clear();
 		} catch (DBException e) {
+			if (!started) {
+				// let the enclosing transaction roll back
+				throw e;
+			}
 			LOGGER.error(e.getMessage(), e);
-			this.connection.rollback();
 		}finally {
-			this.close(this.connection);
+			if (started) {
+				this.endTransaction(connection, committed);
+			}
+			ReplicaRouter.exitPrimaryScope();
+			work.close();
+		}
+	}
+	
+	/**
+	 * @return false if the connection is already in a transaction
+	 */
+	private boolean beginTransaction(Connection connection) {
+		try {
+			java.sql.Connection jdbcConnection = connection.getJdbcConnection();
+			if (!jdbcConnection.getAutoCommit()) {
+				return false;
+			}
+			jdbcConnection.setAutoCommit(false);
+			jdbcConnection.setTransactionIsolation(java.sql.Connection.TRANSACTION_READ_COMMITTED);
+			return true;
+		} catch (SQLException e) {
+			throw new DBException("Could not start the transaction", e);
+		}
+	}
+	
+	private void endTransaction(Connection connection, boolean committed) {
+		if (!committed) {
+			connection.rollback(false);
+		}
+		try {
+			connection.getJdbcConnection().setAutoCommit(true);
+		} catch (SQLException e) {
+			LOGGER.warn("Could not restore auto commit", e);
 		}
 	}
 	
@@ -234,6 +381,15 @@ public class Model extends HashMap<String, Object> {
 		return this;
 	}
 	
+	/**
+	 * Limits each statement of this model to the given time, after which it is cancelled. A
+	 * {@link Deadline} bound to the thread applies as well, whichever comes first.
+	 */
+	public Model timeout(long timeout, TimeUnit unit){
+		this.timeoutMillis = unit.toMillis(timeout);
+		return this;
+	}
+	
 	public <T extends Model> List<T> all() {
 		return this.list(null);
 	}
@@ -242,23 +398,56 @@ public class Model extends HashMap<String, Object> {
 		return this.list(this.sql);
 	}
 	
-	private <T extends Model> List<T> list(String sql) {
+	private <T extends Model> List<T> list(final String sql) {
+		
+		ShardRouter router = this.shardRouter();
+		if (null != router) {
+			List<Model> models = this.onShards(router);
+			if (models.size() == 1) {
+				List<T> list = models.get(0).list(sql);
+				this.clear();
+				return list;
+			}
+			PageRow page = this.pageRow;
+			if (null != page) {
+				// every shard returns its first offset + limit rows and the page is cut from
+				// the merged result
+				for (Model model : models) {
+					model.pageRow = new PageRow(0, page.getOffset() + page.getLimit());
+				}
+			}
+			List<List<T>> results = this.scatter(router, models, new Read<List<T>>() {
+				@Override
+				public List<T> read(Model model) {
+					return model.list(sql);
+				}
+			});
+			List<T> list = OrderComparator.merge(results, this.order, page);
+			this.clear();
+			return list;
+		}
 		
 		String querySql = dialect.getQuerySql(sql, this);
 		
 		LOGGER.debug("Preparing\t=> {}", querySql);
 		
-		Query query = sql2o.open().createQuery(querySql);
-		
-		if (!this.params.isEmpty()) {
-			Object[] paramValues = this.params.values().toArray();
-			query.withParams(paramValues);
-			LOGGER.debug("Parameters\t=> {}", Arrays.toString(paramValues));
+		Connection connection = this.openForRead();
+		try {
+			Query query = this.createQuery(connection, querySql);
+			
+			if (!this.params.isEmpty()) {
+				Object[] paramValues = this.params.values().toArray();
+				query.withParams(paramValues);
+				LOGGER.debug("Parameters\t=> {}", Arrays.toString(paramValues));
+			}
+			
+			List<T> list = (List<T>) query.executeAndFetchModels(clazz);
+			query.close();
+			this.clear();
+			return list;
+		} finally {
+			this.release(connection);
 		}
-		
-		List<T> list = (List<T>) query.executeAndFetchModels(clazz);
-		this.clear();
-		return list;
 	}
 	
 	public <T extends Model> Paginator<T> page(int page, int limit) {
@@ -280,24 +469,50 @@ public class Model extends HashMap<String, Object> {
 	}
 	
 	public <T extends Model> T findOne() {
-		String sql = dialect.getQueryOneSql(this.sql, this);
-		LOGGER.debug("Preparing\t=> {}", sql);
-		Query query = sql2o.open().createQuery(sql);
-		
-		if (!this.params.isEmpty()) {
-			Object[] paramValues = this.params.values().toArray();
-			query.withParams(paramValues);
-			LOGGER.debug("Parameters\t=> {}", Arrays.toString(paramValues));
+		ShardRouter router = this.shardRouter();
+		if (null != router) {
+			List<T> results = this.scatter(router, this.onShards(router), new Read<T>() {
+				@Override
+				public T read(Model model) {
+					return model.findOne();
+				}
+			});
+			// each shard found its first row, the first of those in order wins
+			List<List<T>> rows = new ArrayList<List<T>>(results.size());
+			for (T result : results) {
+				if (null != result) {
+					rows.add(Collections.singletonList(result));
+				}
+			}
+			List<T> first = OrderComparator.merge(rows, this.order, new PageRow(0, 1));
+			this.clear();
+			return first.isEmpty() ? null : first.get(0);
 		}
 		
-		List<T> models = (List<T>) query.executeAndFetchTable().asModel(clazz);
-		
-		this.clear();
-		
-		if(null != models && !models.isEmpty()){
-			return models.get(0);
+		String sql = dialect.getQueryOneSql(this.sql, this);
+		LOGGER.debug("Preparing\t=> {}", sql);
+		Connection connection = this.openForRead();
+		try {
+			Query query = this.createQuery(connection, sql);
+			
+			if (!this.params.isEmpty()) {
+				Object[] paramValues = this.params.values().toArray();
+				query.withParams(paramValues);
+				LOGGER.debug("Parameters\t=> {}", Arrays.toString(paramValues));
+			}
+			
+			List<T> models = (List<T>) query.executeAndFetchTable().asModel(clazz);
+			query.close();
+			
+			this.clear();
+			
+			if(null != models && !models.isEmpty()){
+				return models.get(0);
+			}
+			return null;
+		} finally {
+			this.release(connection);
 		}
-		return null;
 	}
 	
 	public int count(){
@@ -305,28 +520,193 @@ public class Model extends HashMap<String, Object> {
 	}
 	
 	public int count(boolean clear){
+		ShardRouter router = this.shardRouter();
+		if (null != router) {
+			List<Integer> counts = this.scatter(router, this.onShards(router), new Read<Integer>() {
+				@Override
+				public Integer read(Model model) {
+					return model.count(true);
+				}
+			});
+			int count = 0;
+			for (Integer shardCount : counts) {
+				count += shardCount;
+			}
+			if(clear){
+				this.clear();
+			}
+			return count;
+		}
+		
 		String sql = dialect.getQueryCountSql(this.sql, this);
 		LOGGER.debug("Preparing\t=> {}", sql);
-		Query query = sql2o.open().createQuery(sql);
-		
-		if (!this.params.isEmpty()) {
-			Object[] paramValues = this.params.values().toArray();
-			query.withParams(paramValues);
-			LOGGER.debug("Parameters\t=> {}", Arrays.toString(paramValues));
+		Connection connection = this.openForRead();
+		try {
+			Query query = this.createQuery(connection, sql);
+			
+			if (!this.params.isEmpty()) {
+				Object[] paramValues = this.params.values().toArray();
+				query.withParams(paramValues);
+				LOGGER.debug("Parameters\t=> {}", Arrays.toString(paramValues));
+			}
+			int count = query.executeScalar(Integer.class);
+			query.close();
+			if(clear){
+				this.clear();
+			}
+			return count;
+		} finally {
+			this.release(connection);
 		}
-		int count = query.executeScalar(Integer.class);
-		if(clear){
-			this.clear();
+	}
+	
+	private Query createQuery(Connection connection, String sql) {
+		Query query = connection.createQuery(sql);
+		if (this.timeoutMillis > 0) {
+			query.setTimeout(this.timeoutMillis, TimeUnit.MILLISECONDS);
 		}
-		return count;
+		return query;
 	}
 	
-	private void close(Connection connection){
-		if(null != connection){
+	/**
+	 * Writes use the connection of the unit of work, if one runs, or a lazy connection of this
+	 * model that only holds a JDBC connection while a statement executes.
+	 */
+	private Connection openForWrite() {
+		UnitOfWork work = UnitOfWork.current();
+		if (null != work) {
+			return work.connection(this.dbName, this.sql2o);
+		}
+		if (null == this.connection) {
+			this.connection = this.sql2o.openLazy();
+		}
+		return this.connection;
+	}
+	
+	/**
+	 * Reads go to a replica of the database unless it has none, or a transaction or unit of work
+	 * runs.
+	 */
+	private Connection openForRead() {
+		if (null != this.readConnection) {
+			return this.readConnection;
+		}
+		return Base.openForRead(this.dbName);
+	}
+	
+	private ShardRouter shardRouter() {
+		return Base.shardRouter(this.dbName);
+	}
+	
+	private void requireSingleDatabase() {
+		if (null != this.shardRouter()) {
+			throw new DBException("Database " + this.dbName + " is sharded, call shard(key) first");
+		}
+	}
+	
+	/**
+	 * The shards a statement on this model touches: the one of the shard key when the where
+	 * clause has it as an equality, all of them otherwise.
+	 */
+	private List<Model> onShards(ShardRouter router) {
+		String shardKey = this.shardKey();
+		for (Map.Entry<ParamKey, Object> param : this.params.entrySet()) {
+			ParamKey paramKey = param.getKey();
+			if (shardKey.equalsIgnoreCase(paramKey.getColumn()) && "=".equals(paramKey.getOpt().trim())
+					&& null != param.getValue()) {
+				return Arrays.asList(this.onShard(router.shardFor(param.getValue())));
+			}
+		}
+		List<String> shards = router.shards();
+		List<Model> models = new ArrayList<Model>(shards.size());
+		for (String shard : shards) {
+			models.add(this.onShard(shard));
+		}
+		return models;
+	}
+	
+	/**
+	 * A copy of this model's pending statement, bound to one shard.
+	 */
+	private Model onShard(String shard) {
+		Model model;
+		try {
+			model = this.clazz.newInstance();
+		} catch (InstantiationException e) {
+			throw new DBException(e);
+		} catch (IllegalAccessException e) {
+			throw new DBException(e);
+		}
+		model.db(shard);
+		model.putAll(this);
+		model.params.putAll(this.params);
+		model.dialect = this.dialect;
+		model.sql = this.sql;
+		model.order = this.order;
+		model.timeoutMillis = this.timeoutMillis;
+		model.pageRow = this.pageRow;
+		return model;
+	}
+	
+	/**
+	 * Runs a read on every shard model in parallel. Connections are opened on the calling thread,
+	 * so that its transaction and read-your-writes state picks them, and its deadline goes along.
+	 * They are released only after every read stopped, which invokeAll waits for even on failure.
+	 */
+	private <V> List<V> scatter(ShardRouter router, List<Model> models, final Read<V> read) {
+		if (models.size() == 1) {
+			return Arrays.asList(read.read(models.get(0)));
+		}
+		List<Callable<V>> tasks = new ArrayList<Callable<V>>(models.size());
+		final Deadline deadline = Deadline.current();
+		try {
+			for (final Model model : models) {
+				model.readConnection = Base.openForRead(model.dbName);
+				tasks.add(new Callable<V>() {
+					@Override
+					public V call() {
+						Deadline.Scope scope = Deadline.enter(deadline);
+						try {
+							return read.read(model);
+						} finally {
+							scope.close();
+						}
+					}
+				});
+			}
+			return router.invokeAll(tasks);
+		} finally {
+			for (Model model : models) {
+				Connection connection = model.readConnection;
+				model.readConnection = null;
+				this.release(connection);
+			}
+		}
+	}
+	
+	private interface Read<V> {
+		V read(Model model);
+	}
+	
+	/**
+	 * Closes a connection this model opened itself; those of a unit of work or of a scattered
+	 * read are closed by their owner.
+	 */
+	private void release(Connection connection){
+		if(null != connection && connection != this.readConnection && !UnitOfWork.isBound(connection)){
 			connection.close();
 		}
 	}
 	
+	/**
+	 * Closes the connection a shard copy opened for its write.
+	 */
+	private void releaseWrite() {
+		Connection connection = this.connection;
+		this.connection = null;
+		this.release(connection);
+	}
+	
 	/** meta data **/
 	public String table() {
 		return clazz.getAnnotation(Table.class).name();
@@ -335,6 +715,11 @@ public class Model extends HashMap<String, Object> {
 	public String pkName() {
 		return clazz.getAnnotation(Table.class).pk();
 	}
+	
+	public String shardKey() {
+		String shardKey = clazz.getAnnotation(Table.class).shardKey();
+		return shardKey.isEmpty() ? this.pkName() : shardKey;
+	}
 
 	public Class<? extends Model> clazz() {
 		return this.clazz;
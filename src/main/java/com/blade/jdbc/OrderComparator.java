@@ -0,0 +1,133 @@
+package com.blade.jdbc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Compares rows by an order by clause such as "age desc, name", so that results already sorted by
+ * each shard can be merged in the same order. Nulls sort first, as in MySQL; strings compare by
+ * Java's natural order, which may differ from the collation of the database.
+ */
+final class OrderComparator implements Comparator<Map<String, Object>> {
+
+	private final String[] columns;
+	private final boolean[] descending;
+
+	OrderComparator(String order) {
+		String[] parts = order.split(",");
+		this.columns = new String[parts.length];
+		this.descending = new boolean[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			String[] words = parts[i].trim().split("\\s+");
+			String column = words[0];
+			int dot = column.lastIndexOf('.');
+			this.columns[i] = dot == -1 ? column : column.substring(dot + 1);
+			this.descending[i] = words.length > 1 && "desc".equalsIgnoreCase(words[1]);
+		}
+	}
+
+	@Override
+	public int compare(Map<String, Object> a, Map<String, Object> b) {
+		for (int i = 0; i < columns.length; i++) {
+			int result = compareValues(value(a, columns[i]), value(b, columns[i]));
+			if (result != 0) {
+				return descending[i] ? -result : result;
+			}
+		}
+		return 0;
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static int compareValues(Object a, Object b) {
+		if (a == b) {
+			return 0;
+		}
+		if (null == a) {
+			return -1;
+		}
+		if (null == b) {
+			return 1;
+		}
+		if (a instanceof Number && b instanceof Number && a.getClass() != b.getClass()) {
+			return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString()));
+		}
+		if (a instanceof Comparable && a.getClass() == b.getClass()) {
+			return ((Comparable) a).compareTo(b);
+		}
+		return a.toString().compareTo(b.toString());
+	}
+
+	private static Object value(Map<String, Object> row, String column) {
+		Object value = row.get(column);
+		if (null == value && !row.containsKey(column)) {
+			// drivers differ in the case of column labels
+			for (Map.Entry<String, Object> entry : row.entrySet()) {
+				if (entry.getKey().equalsIgnoreCase(column)) {
+					return entry.getValue();
+				}
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Merges the results of several shards, each sorted by order if it is not null, and cuts the
+	 * page out of the merged rows.
+	 */
+	static <T extends Model> List<T> merge(List<List<T>> results, String order, PageRow pageRow) {
+		int offset = null == pageRow ? 0 : pageRow.getOffset();
+		int end = null == pageRow ? Integer.MAX_VALUE : offset + pageRow.getLimit();
+		List<T> merged = new ArrayList<T>();
+		if (null == order) {
+			for (List<T> result : results) {
+				merged.addAll(result);
+			}
+			return merged.subList(Math.min(offset, merged.size()), Math.min(end, merged.size()));
+		}
+
+		final OrderComparator comparator = new OrderComparator(order);
+		PriorityQueue<Cursor<T>> heads = new PriorityQueue<Cursor<T>>(Math.max(1, results.size()), new Comparator<Cursor<T>>() {
+			@Override
+			public int compare(Cursor<T> a, Cursor<T> b) {
+				int result = comparator.compare(a.head(), b.head());
+				// equal rows keep the order of the shards
+				return result != 0 ? result : a.shard - b.shard;
+			}
+		});
+		for (int i = 0; i < results.size(); i++) {
+			if (!results.get(i).isEmpty()) {
+				heads.add(new Cursor<T>(i, results.get(i)));
+			}
+		}
+		for (int n = 0; n < end && !heads.isEmpty(); n++) {
+			Cursor<T> cursor = heads.poll();
+			if (n >= offset) {
+				merged.add(cursor.head());
+			}
+			if (++cursor.position < cursor.rows.size()) {
+				heads.add(cursor);
+			}
+		}
+		return merged;
+	}
+
+	private static final class Cursor<T> {
+		final int shard;
+		final List<T> rows;
+		int position;
+
+		Cursor(int shard, List<T> rows) {
+			this.shard = shard;
+			this.rows = rows;
+		}
+
+		T head() {
+			return rows.get(position);
+		}
+	}
+
+}
@@ -34,6 +34,13 @@ public @interface Table {
     String name() default "";
     
     String pk() default "id";
+    
+    /**
+     * (Optional) The column rows are distributed by when the table lives in a
+     * sharded database.
+     * <p> Defaults to the primary key.
+     */
+    String shardKey() default "";
 
     /** (Optional) The catalog of the table.
      * <p> Defaults to the default catalog.
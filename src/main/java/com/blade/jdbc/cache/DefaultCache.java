@@ -1,9 +1,8 @@
 package com.blade.jdbc.cache;
 
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -55,8 +54,9 @@ public class DefaultCache implements Cache {
 	
 	public DefaultCache(int cacheSize) {
 		this.cacheSize	= cacheSize;
-		this._mCache	= Collections.synchronizedMap(new HashMap<String, CacheObject<String, Object>>());
-		this._hCache	= Collections.synchronizedMap(new HashMap<String, Map<String, CacheObject<String, Object>>>());
+		// 并发容器: 读锁下也会删除过期对象
+		this._mCache	= new ConcurrentHashMap<String, CacheObject<String, Object>>();
+		this._hCache	= new ConcurrentHashMap<String, Map<String, CacheObject<String, Object>>>();
 	}
 	
 	@Override
@@ -72,7 +72,7 @@ public class DefaultCache implements Cache {
 			}
 			Map<String, CacheObject<String, Object>> coMap = _hCache.get(key);
 			if(null == coMap){
-				coMap = new HashMap<String, CacheObject<String, Object>>();
+				coMap = new ConcurrentHashMap<String, CacheObject<String, Object>>();
 			}
 			coMap.put(field, co);
 			_hCache.put(key, coMap);
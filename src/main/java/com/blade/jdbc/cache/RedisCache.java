@@ -21,7 +21,7 @@ public class RedisCache implements Cache {
 		this.poolInit(ip, port);
 	}
 	
-	private synchronized void poolInit(String ip, int port){
+	private void poolInit(String ip, int port){
 		// 建立连接池配置参数
         JedisPoolConfig config = new JedisPoolConfig();
         // 设置最大阻塞时间，毫秒数milliseconds
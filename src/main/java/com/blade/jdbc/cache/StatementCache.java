@@ -9,6 +9,11 @@ import java.util.concurrent.ConcurrentMap;
 
 import com.blade.jdbc.Util;
 
+/**
+ * @deprecated statements are cached per connection by {@link com.blade.jdbc.pool.BasicDataSourceImpl},
+ * see {@link com.blade.jdbc.pool.PoolConfig#setStatementCacheSize(int)}
+ */
+@Deprecated
 public enum StatementCache {
 	INSTANCE;
 
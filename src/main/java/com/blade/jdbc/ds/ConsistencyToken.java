@@ -0,0 +1,40 @@
+package com.blade.jdbc.ds;
+
+import java.io.Serializable;
+
+/**
+ * The last write of a session: when it happened and, if known, the position of the primary it
+ * produced, such as a GTID set. Reads shortly after it are routed so that they see the write.
+ * <p>
+ * Tokens are immutable and serializable, so they can be kept in an HTTP session and handed back
+ * with {@link ReplicaRouter#resumeSession(ConsistencyToken)} on the next request.
+ */
+public final class ConsistencyToken implements Serializable {
+	
+	private static final long serialVersionUID = 2713968532216478013L;
+	
+	private final long writeTime;
+	private final String position;
+	
+	public ConsistencyToken(long writeTime, String position) {
+		this.writeTime = writeTime;
+		this.position = position;
+	}
+	
+	public long getWriteTime() {
+		return writeTime;
+	}
+	
+	/**
+	 * @return the primary's position after the write, or null if only the time is known
+	 */
+	public String getPosition() {
+		return position;
+	}
+	
+	@Override
+	public String toString() {
+		return "ConsistencyToken{writeTime=" + writeTime + ", position=" + position + '}';
+	}
+	
+}
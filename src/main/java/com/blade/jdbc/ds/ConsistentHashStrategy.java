@@ -0,0 +1,76 @@
+package com.blade.jdbc.ds;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Places shard keys on a hash ring with a number of virtual nodes per shard, so that adding a
+ * shard only moves about 1/n of the keys. Keys are hashed by their string form, so the int 42 and
+ * the long 42 land on the same shard.
+ */
+public class ConsistentHashStrategy implements ShardStrategy {
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private final List<String> shards;
+	private final TreeMap<Long, String> ring = new TreeMap<Long, String>();
+	
+	public ConsistentHashStrategy(List<String> shards) {
+		this(shards, 160);
+	}
+	
+	public ConsistentHashStrategy(List<String> shards, int virtualNodes) {
+		if (null == shards || shards.isEmpty()) {
+			throw new IllegalArgumentException("At least one shard is required");
+		}
+		if (virtualNodes < 1) {
+			throw new IllegalArgumentException("virtualNodes must be at least 1: " + virtualNodes);
+		}
+		this.shards = Collections.unmodifiableList(new ArrayList<String>(shards));
+		for (String shard : shards) {
+			// each digest yields four points on the ring
+			for (int i = 0; i < (virtualNodes + 3) / 4; i++) {
+				byte[] digest = md5(shard + '#' + i);
+				for (int j = 0; j < 4; j++) {
+					ring.put(point(digest, j), shard);
+				}
+			}
+		}
+	}
+	
+	@Override
+	public String shardFor(Object key) {
+		if (null == key) {
+			throw new IllegalArgumentException("Shard key must not be null");
+		}
+		Map.Entry<Long, String> entry = ring.ceilingEntry(point(md5(key.toString()), 0));
+		return null != entry ? entry.getValue() : ring.firstEntry().getValue();
+	}
+	
+	@Override
+	public List<String> shards() {
+		return shards;
+	}
+	
+	private static long point(byte[] digest, int n) {
+		return ((long) (digest[3 + n * 4] & 0xFF) << 24)
+				| ((long) (digest[2 + n * 4] & 0xFF) << 16)
+				| ((long) (digest[1 + n * 4] & 0xFF) << 8)
+				| (digest[n * 4] & 0xFF);
+	}
+	
+	private static byte[] md5(String value) {
+		try {
+			return MessageDigest.getInstance("MD5").digest(value.getBytes(UTF_8));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+}
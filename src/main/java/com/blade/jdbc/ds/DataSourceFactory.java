@@ -2,16 +2,25 @@ package com.blade.jdbc.ds;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.sql.SQLException;
 import java.util.Properties;
 
 import javax.sql.DataSource;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.blade.jdbc.pool.BasicDataSourceImpl;
+import com.blade.jdbc.pool.PoolConfig;
 
 public class DataSourceFactory {
 	
+	private static final Logger LOGGER = LoggerFactory.getLogger(DataSourceFactory.class);
+	
 	static final String DEFAULT_DS_NAME = "blade-jdbc";
 	
+	private static final String LANE_PREFIX = "jdbc.pool.lane.";
+	
 	public static DataSource createDataSource(String propsPath) throws IOException {
 		InputStream in = DataSourceFactory.class.getClassLoader().getResourceAsStream(propsPath);
 		Properties props = new Properties();
@@ -21,11 +30,118 @@ public class DataSourceFactory {
 		String url = props.getProperty("jdbc.url");
 		String username = props.getProperty("jdbc.username");
 		String password = props.getProperty("jdbc.password");
-		return new BasicDataSourceImpl(DEFAULT_DS_NAME, driver, url, username, password);
+		return createDataSource(driver, url, username, password, getPoolConfig(props));
 	}
 	
 	public static DataSource createDataSource(String driver, String url, String username, String password) throws IOException {
-		return new BasicDataSourceImpl(DEFAULT_DS_NAME, driver, url, username, password);
+		return createDataSource(driver, url, username, password, new PoolConfig());
+	}
+	
+	public static DataSource createDataSource(String driver, String url, String username, String password, PoolConfig config) throws IOException {
+		BasicDataSourceImpl dataSource = new BasicDataSourceImpl(DEFAULT_DS_NAME, driver, url, username, password, config);
+		try {
+			dataSource.prefill();
+		} catch (SQLException e) {
+			LOGGER.warn("Cannot prefill " + dataSource + ", connections will be opened on demand", e);
+		}
+		return dataSource;
+	}
+	
+	/**
+	 * Reads the optional jdbc.pool.* keys, falling back to the {@link PoolConfig} defaults.
+	 */
+	static PoolConfig getPoolConfig(Properties props) {
+		PoolConfig config = new PoolConfig();
+		String value = props.getProperty("jdbc.pool.maxSize");
+		if (null != value) {
+			config.setMaxSize(Integer.parseInt(value.trim()));
+		}
+		value = props.getProperty("jdbc.pool.minIdle");
+		if (null != value) {
+			config.setMinIdle(Integer.parseInt(value.trim()));
+		}
+		value = props.getProperty("jdbc.pool.maxLifetime");
+		if (null != value) {
+			config.setMaxLifetime(Long.parseLong(value.trim()));
+		}
+		value = props.getProperty("jdbc.pool.idleTimeout");
+		if (null != value) {
+			config.setIdleTimeout(Long.parseLong(value.trim()));
+		}
+		value = props.getProperty("jdbc.pool.borrowTimeout");
+		if (null != value) {
+			config.setBorrowTimeout(Long.parseLong(value.trim()));
+		}
+		value = props.getProperty("jdbc.pool.maxWaitingThreads");
+		if (null != value) {
+			config.setMaxWaitingThreads(Integer.parseInt(value.trim()));
+		}
+		value = props.getProperty("jdbc.pool.lockTimeout");
+		if (null != value) {
+			config.setLockTimeout(Integer.parseInt(value.trim()));
+		}
+		value = props.getProperty("jdbc.pool.keepaliveTime");
+		if (null != value) {
+			config.setKeepaliveTime(Long.parseLong(value.trim()));
+		}
+		value = props.getProperty("jdbc.pool.validationTimeout");
+		if (null != value) {
+			config.setValidationTimeout(Long.parseLong(value.trim()));
+		}
+		value = props.getProperty("jdbc.pool.housekeepingPeriod");
+		if (null != value) {
+			config.setHousekeepingPeriod(Long.parseLong(value.trim()));
+		}
+		value = props.getProperty("jdbc.pool.adaptiveSizing");
+		if (null != value) {
+			config.setAdaptiveSizing(Boolean.parseBoolean(value.trim()));
+		}
+		value = props.getProperty("jdbc.pool.adaptivePeriod");
+		if (null != value) {
+			config.setAdaptivePeriod(Long.parseLong(value.trim()));
+		}
+		value = props.getProperty("jdbc.pool.breakerFailureThreshold");
+		if (null != value) {
+			config.setBreakerFailureThreshold(Integer.parseInt(value.trim()));
+		}
+		value = props.getProperty("jdbc.pool.breakerCooldown");
+		if (null != value) {
+			config.setBreakerCooldown(Long.parseLong(value.trim()));
+		}
+		value = props.getProperty("jdbc.pool.statementCacheSize");
+		if (null != value) {
+			config.setStatementCacheSize(Integer.parseInt(value.trim()));
+		}
+		value = props.getProperty("jdbc.pool.leakDetectionThreshold");
+		if (null != value) {
+			config.setLeakDetectionThreshold(Long.parseLong(value.trim()));
+		}
+		value = props.getProperty("jdbc.pool.leakTraceSampleRate");
+		if (null != value) {
+			config.setLeakTraceSampleRate(Integer.parseInt(value.trim()));
+		}
+		value = props.getProperty("jdbc.pool.reclaimLeakedConnections");
+		if (null != value) {
+			config.setReclaimLeakedConnections(Boolean.parseBoolean(value.trim()));
+		}
+		value = props.getProperty("jdbc.pool.virtualThreads");
+		if (null != value) {
+			config.setVirtualThreads(Boolean.parseBoolean(value.trim()));
+		}
+		value = props.getProperty("jdbc.pool.registerMbeans");
+		if (null != value) {
+			config.setRegisterMbeans(Boolean.parseBoolean(value.trim()));
+		}
+		// jdbc.pool.lane.<name>.maxSize and, optionally, jdbc.pool.lane.<name>.borrowTimeout
+		for (String key : props.stringPropertyNames()) {
+			if (key.startsWith(LANE_PREFIX) && key.endsWith(".maxSize")) {
+				String lane = key.substring(LANE_PREFIX.length(), key.length() - ".maxSize".length());
+				value = props.getProperty(LANE_PREFIX + lane + ".borrowTimeout");
+				long borrowTimeout = null != value ? Long.parseLong(value.trim()) : config.getBorrowTimeout();
+				config.addLane(lane, Integer.parseInt(props.getProperty(key).trim()), borrowTimeout);
+			}
+		}
+		return config;
 	}
 	
-}
+}
\ No newline at end of file
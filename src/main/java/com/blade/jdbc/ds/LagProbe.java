@@ -0,0 +1,19 @@
+package com.blade.jdbc.ds;
+
+import javax.sql.DataSource;
+
+/**
+ * Tells {@link ReplicaRouter} whether a replica has caught up with a session's last write, so that
+ * the session's reads can leave the primary before the read-your-writes window ends. A MySQL
+ * implementation would compare the token's GTID set with the replica's
+ * <code>@@gtid_executed</code>, or its write time with <code>Seconds_Behind_Master</code>.
+ */
+public interface LagProbe {
+	
+	/**
+	 * @param replica index of the replica in the router
+	 * @return true if the replica has applied the write the token stands for
+	 */
+	boolean caughtUp(int replica, DataSource dataSource, ConsistencyToken token);
+	
+}
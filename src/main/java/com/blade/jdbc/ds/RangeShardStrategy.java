@@ -0,0 +1,64 @@
+package com.blade.jdbc.ds;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maps ranges of shard key values to shards: a key belongs to the shard of the greatest lower
+ * bound not above it. Integral keys are compared as longs, whatever their boxed type.
+ * <pre>
+ *    new RangeShardStrategy().addRange(0, "users_0").addRange(1000000, "users_1");
+ * </pre>
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class RangeShardStrategy implements ShardStrategy {
+	
+	private final TreeMap<Comparable, String> ranges = new TreeMap<Comparable, String>();
+	private final List<String> shards = new ArrayList<String>();
+	
+	/**
+	 * Keys from lowerBound up to the next range's lower bound go to the shard.
+	 */
+	public RangeShardStrategy addRange(Comparable lowerBound, String shard) {
+		if (null == lowerBound || null == shard) {
+			throw new IllegalArgumentException("lowerBound and shard must not be null");
+		}
+		Comparable bound = normalize(lowerBound);
+		if (!ranges.isEmpty() && ranges.firstKey().getClass() != bound.getClass()) {
+			throw new IllegalArgumentException("Lower bounds must all be of one type: " + lowerBound);
+		}
+		ranges.put(bound, shard);
+		if (!shards.contains(shard)) {
+			shards.add(shard);
+		}
+		return this;
+	}
+	
+	@Override
+	public String shardFor(Object key) {
+		if (!(key instanceof Comparable)) {
+			throw new IllegalArgumentException("Shard key must be comparable: " + key);
+		}
+		Map.Entry<Comparable, String> entry = ranges.floorEntry(normalize((Comparable) key));
+		if (null == entry) {
+			throw new IllegalArgumentException("No shard for key: " + key);
+		}
+		return entry.getValue();
+	}
+	
+	@Override
+	public List<String> shards() {
+		return Collections.unmodifiableList(shards);
+	}
+	
+	private static Comparable normalize(Comparable key) {
+		if (key instanceof Integer || key instanceof Long || key instanceof Short || key instanceof Byte) {
+			return ((Number) key).longValue();
+		}
+		return key;
+	}
+	
+}
@@ -0,0 +1,253 @@
+package com.blade.jdbc.ds;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+import org.sql2o.Sql2oException;
+
+import com.blade.jdbc.pool.BasicDataSource;
+
+/**
+ * Routes the reads of one database to its replicas and everything else to the primary.
+ * <p>
+ * A replica that fails to hand out a connection, or whose pool has its circuit breaker open, is
+ * skipped for {@link #setRetryInterval(long)}; when no replica is healthy reads fall back to the
+ * primary. Reads issued between {@link #enterPrimaryScope()} and {@link #exitPrimaryScope()}
+ * always go to the primary.
+ * <p>
+ * Each thread also carries a {@link ConsistencyToken} of its last write. For
+ * {@link #setReadYourWritesWindow(long)} after it, reads go to the primary, or to a replica that the
+ * {@link LagProbe}, if any, reports as caught up.
+ */
+public class ReplicaRouter {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaRouter.class);
+	
+	private static final ThreadLocal<int[]> PRIMARY_SCOPE = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+	
+	private final Sql2o primary;
+	private final List<Sql2o> replicas;
+	private final RoutingStrategy strategy;
+	private final AtomicInteger next = new AtomicInteger();
+	// per replica, the time until which it is skipped
+	private final AtomicLongArray downUntil;
+	private long retryInterval = 5000L;
+	private long readYourWritesWindow = 1000L;
+	private LagProbe lagProbe;
+	private final ThreadLocal<ConsistencyToken> session = new ThreadLocal<ConsistencyToken>();
+	
+	public ReplicaRouter(Sql2o primary, List<DataSource> replicas, RoutingStrategy strategy) {
+		this.primary = primary;
+		this.strategy = strategy;
+		this.replicas = new ArrayList<Sql2o>(replicas.size());
+		for (DataSource replica : replicas) {
+			this.replicas.add(new Sql2o(replica, primary.getQuirks()));
+		}
+		this.downUntil = new AtomicLongArray(replicas.size());
+	}
+	
+	public Sql2o getPrimary() {
+		return primary;
+	}
+	
+	public List<Sql2o> getReplicas() {
+		return replicas;
+	}
+	
+	/**
+	 * How long a replica that failed is left out before reads try it again, in milliseconds.
+	 */
+	public ReplicaRouter setRetryInterval(long retryInterval) {
+		this.retryInterval = retryInterval;
+		return this;
+	}
+	
+	/**
+	 * How long after a write of the same session its reads avoid replicas that may not have
+	 * applied it yet, in milliseconds; 0 disables read-your-writes routing.
+	 */
+	public ReplicaRouter setReadYourWritesWindow(long readYourWritesWindow) {
+		this.readYourWritesWindow = readYourWritesWindow;
+		return this;
+	}
+	
+	/**
+	 * Lets reads inside the read-your-writes window use replicas that have caught up.
+	 */
+	public ReplicaRouter setLagProbe(LagProbe lagProbe) {
+		this.lagProbe = lagProbe;
+		return this;
+	}
+	
+	/**
+	 * Records a write of the calling thread's session.
+	 */
+	public void recordWrite() {
+		recordWrite(null);
+	}
+	
+	/**
+	 * Records a write of the calling thread's session together with the primary's position after
+	 * it, for a {@link LagProbe} that compares positions.
+	 */
+	public void recordWrite(String position) {
+		if (readYourWritesWindow > 0) {
+			session.set(new ConsistencyToken(System.currentTimeMillis(), position));
+		}
+	}
+	
+	/**
+	 * @return the token of the calling thread's last write, or null
+	 */
+	public ConsistencyToken getSessionToken() {
+		return session.get();
+	}
+	
+	/**
+	 * Continues a session on this thread, e.g. with a token kept from the previous request.
+	 */
+	public void resumeSession(ConsistencyToken token) {
+		if (null == token) {
+			session.remove();
+		} else {
+			session.set(token);
+		}
+	}
+	
+	public void clearSession() {
+		session.remove();
+	}
+	
+	/**
+	 * Opens a connection for a read: on a healthy replica, or on the primary if there is none, the
+	 * calling thread is in a primary scope, or it wrote recently and no replica has caught up.
+	 */
+	public Connection openForRead() {
+		if (!isPrimaryScope()) {
+			ConsistencyToken token = session.get();
+			if (null != token && System.currentTimeMillis() - token.getWriteTime() >= readYourWritesWindow) {
+				session.remove();
+				token = null;
+			}
+			if (null != token && null == lagProbe) {
+				return primary.openLazy();
+			}
+			for (int attempt = 0, count = replicas.size(); attempt < count; attempt++) {
+				int index = pick(token);
+				if (index < 0) {
+					break;
+				}
+				try {
+					// opened eagerly so that an unreachable replica is noticed here
+					return replicas.get(index).open();
+				} catch (Sql2oException e) {
+					downUntil.set(index, System.currentTimeMillis() + retryInterval);
+					LOGGER.warn("Replica " + index + " unavailable, skipping it for " + retryInterval + " ms", e);
+				}
+			}
+		}
+		return primary.openLazy();
+	}
+	
+	/**
+	 * @param token the session's recent write, which the replica must have applied, or null
+	 * @return the replica the next read goes to, or -1 if none is healthy
+	 */
+	private int pick(ConsistencyToken token) {
+		int count = replicas.size();
+		long now = System.currentTimeMillis();
+		if (strategy == RoutingStrategy.LEAST_OUTSTANDING) {
+			int best = -1;
+			int bestOutstanding = Integer.MAX_VALUE;
+			// start at a rotating offset so that ties are spread
+			int start = next.getAndIncrement();
+			for (int i = 0; i < count; i++) {
+				int index = (start + i) % count;
+				if (index < 0) {
+					index += count;
+				}
+				if (isHealthy(index, now) && caughtUp(index, token)) {
+					int outstanding = outstanding(index);
+					if (outstanding < bestOutstanding) {
+						best = index;
+						bestOutstanding = outstanding;
+					}
+				}
+			}
+			return best;
+		}
+		for (int i = 0; i < count; i++) {
+			int index = next.getAndIncrement() % count;
+			if (index < 0) {
+				index += count;
+			}
+			if (isHealthy(index, now) && caughtUp(index, token)) {
+				return index;
+			}
+		}
+		return -1;
+	}
+	
+	private boolean isHealthy(int index, long now) {
+		if (downUntil.get(index) > now) {
+			return false;
+		}
+		DataSource dataSource = replicas.get(index).getDataSource();
+		return !(dataSource instanceof BasicDataSource)
+				|| !"OPEN".equals(((BasicDataSource) dataSource).getCircuitState());
+	}
+	
+	private boolean caughtUp(int index, ConsistencyToken token) {
+		if (null == token) {
+			return true;
+		}
+		try {
+			return lagProbe.caughtUp(index, replicas.get(index).getDataSource(), token);
+		} catch (RuntimeException e) {
+			LOGGER.warn("Lag probe failed on replica " + index, e);
+			return false;
+		}
+	}
+	
+	private int outstanding(int index) {
+		DataSource dataSource = replicas.get(index).getDataSource();
+		if (dataSource instanceof BasicDataSource) {
+			BasicDataSource pool = (BasicDataSource) dataSource;
+			return pool.activeCount() - pool.getIdleConnections();
+		}
+		return 0;
+	}
+	
+	/**
+	 * Sends every read of the calling thread to the primary until the matching
+	 * {@link #exitPrimaryScope()}, e.g. while a transaction runs. Scopes nest.
+	 */
+	public static void enterPrimaryScope() {
+		PRIMARY_SCOPE.get()[0]++;
+	}
+	
+	public static void exitPrimaryScope() {
+		int[] depth = PRIMARY_SCOPE.get();
+		if (depth[0] > 0) {
+			depth[0]--;
+		}
+	}
+	
+	public static boolean isPrimaryScope() {
+		return PRIMARY_SCOPE.get()[0] > 0;
+	}
+	
+}
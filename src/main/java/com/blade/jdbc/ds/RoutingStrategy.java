@@ -0,0 +1,19 @@
+package com.blade.jdbc.ds;
+
+/**
+ * How {@link ReplicaRouter} picks the replica a read goes to.
+ */
+public enum RoutingStrategy {
+	
+	/**
+	 * Each healthy replica in turn.
+	 */
+	ROUND_ROBIN,
+	
+	/**
+	 * The healthy replica with the fewest borrowed connections. Replicas that are not pooled by a
+	 * {@link com.blade.jdbc.pool.BasicDataSource} count as idle.
+	 */
+	LEAST_OUTSTANDING
+	
+}
@@ -0,0 +1,166 @@
+package com.blade.jdbc.ds;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.blade.jdbc.exception.DBException;
+
+/**
+ * A logical database split over several shards, each of them a database opened in
+ * {@link com.blade.jdbc.Base} under its own name, possibly with replicas.
+ * <p>
+ * {@link com.blade.jdbc.Model} routes statements that name a shard key value to its shard and
+ * scatters the others over all shards on {@link #setExecutor(ExecutorService)}.
+ */
+public class ShardRouter {
+	
+	private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+		
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "blade-jdbc-shard-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
+	private final ShardStrategy strategy;
+	private ExecutorService executor = DEFAULT_EXECUTOR;
+	
+	public ShardRouter(ShardStrategy strategy) {
+		this.strategy = strategy;
+	}
+	
+	public ShardStrategy getStrategy() {
+		return strategy;
+	}
+	
+	/**
+	 * Runs the per-shard parts of scattered statements; a shared cached pool of daemon threads by
+	 * default.
+	 */
+	public ShardRouter setExecutor(ExecutorService executor) {
+		this.executor = executor;
+		return this;
+	}
+	
+	public String shardFor(Object key) {
+		return strategy.shardFor(key);
+	}
+	
+	public List<String> shards() {
+		return strategy.shards();
+	}
+	
+	/**
+	 * Runs the tasks in parallel, the first one on the calling thread, and returns their results
+	 * in order. If a task fails the others are cancelled and its exception is rethrown. Either way
+	 * this returns only once no task runs any more, so the caller may release what they used.
+	 */
+	public <V> List<V> invokeAll(List<Callable<V>> tasks) {
+		CountDownLatch done = new CountDownLatch(Math.max(0, tasks.size() - 1));
+		List<Fork<V>> forks = new ArrayList<Fork<V>>(tasks.size());
+		for (int i = 1; i < tasks.size(); i++) {
+			forks.add(new Fork<V>(tasks.get(i), done));
+		}
+		List<Future<V>> futures = new ArrayList<Future<V>>(tasks.size());
+		try {
+			for (Fork<V> fork : forks) {
+				futures.add(executor.submit(fork));
+			}
+			List<V> results = new ArrayList<V>(tasks.size());
+			if (!tasks.isEmpty()) {
+				results.add(tasks.get(0).call());
+			}
+			for (Future<V> future : futures) {
+				results.add(future.get());
+			}
+			return results;
+		} catch (ExecutionException e) {
+			throw rethrow(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DBException("Interrupted while waiting for shards", e);
+		} catch (Exception e) {
+			throw rethrow(e);
+		} finally {
+			for (Fork<V> fork : forks) {
+				fork.abandon();
+			}
+			for (Future<V> future : futures) {
+				future.cancel(true);
+			}
+			// a cancelled future reports at once, the interrupt does not stop a blocked JDBC call
+			awaitUninterruptibly(done);
+		}
+	}
+	
+	private static void awaitUninterruptibly(CountDownLatch latch) {
+		boolean interrupted = false;
+		for (;;) {
+			try {
+				latch.await();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private static RuntimeException rethrow(Throwable cause) {
+		if (cause instanceof RuntimeException) {
+			return (RuntimeException) cause;
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return new DBException(cause);
+	}
+	
+	/**
+	 * A task run on the executor that counts down once it has finished, or once it is abandoned
+	 * before it started, whichever comes first.
+	 */
+	private static final class Fork<V> implements Callable<V> {
+		private final Callable<V> task;
+		private final CountDownLatch done;
+		private final AtomicBoolean claimed = new AtomicBoolean();
+		
+		Fork(Callable<V> task, CountDownLatch done) {
+			this.task = task;
+			this.done = done;
+		}
+		
+		@Override
+		public V call() throws Exception {
+			if (!claimed.compareAndSet(false, true)) {
+				return null;
+			}
+			try {
+				return task.call();
+			} finally {
+				done.countDown();
+			}
+		}
+		
+		void abandon() {
+			if (claimed.compareAndSet(false, true)) {
+				done.countDown();
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,21 @@
+package com.blade.jdbc.ds;
+
+import java.util.List;
+
+/**
+ * Decides which database holds the rows of a shard key value. Shards are named by the database
+ * names they were opened under in {@link com.blade.jdbc.Base}.
+ */
+public interface ShardStrategy {
+
+	/**
+	 * @return the name of the database holding rows with this shard key value
+	 */
+	String shardFor(Object key);
+
+	/**
+	 * @return all shards, in a fixed order
+	 */
+	List<String> shards();
+
+}
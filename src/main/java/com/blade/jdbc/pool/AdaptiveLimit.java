@@ -0,0 +1,79 @@
+package com.blade.jdbc.pool;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gradient-style controller of the number of connections a pool may open.
+ * <p>
+ * Each period it compares the mean time connections were held, the latency the database
+ * delivers, with its long-term baseline. While borrowers had to wait and latency stays near the
+ * baseline the limit grows by about its square root; once latency inflates past the baseline the
+ * database is beyond its concurrency knee and the limit shrinks in proportion. When nobody waits,
+ * unused connections are given back one per period.
+ */
+class AdaptiveLimit {
+
+    // Waiting this long at the 99th percentile means the pool is too small
+    private static final long SATURATED_WAIT_MICROS = 1000;
+    private static final int MIN_SAMPLES = 10;
+    private static final double TOLERANCE = 1.2;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private double estimatedLimit;
+    private double longRtt;
+    private volatile int limit;
+
+    final AtomicLong increases = new AtomicLong();
+    final AtomicLong decreases = new AtomicLong();
+
+    AdaptiveLimit(int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.estimatedLimit = minLimit;
+        this.limit = minLimit;
+    }
+
+    int get() {
+        return limit;
+    }
+
+    /**
+     * Called from a single thread once per period with what the pool saw during it.
+     *
+     * @param holdTime   connections released during the period
+     * @param borrowWait borrows completed during the period
+     * @param inUse      connections borrowed at the end of the period
+     * @return the new limit
+     */
+    int update(HistogramSnapshot holdTime, HistogramSnapshot borrowWait, int inUse) {
+        boolean saturated = borrowWait.getP99Micros() >= SATURATED_WAIT_MICROS;
+        double gradient = 1.0;
+        if (holdTime.getCount() >= MIN_SAMPLES) {
+            double shortRtt = Math.max(1, holdTime.getMeanMicros());
+            // The baseline follows latency down at once but up only slowly, so that it stays near
+            // what the database delivers unloaded while still adapting to a changed workload
+            longRtt = longRtt == 0 || shortRtt < longRtt ? shortRtt : longRtt * 0.99 + shortRtt * 0.01;
+            gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+        }
+
+        double newLimit;
+        if (saturated) {
+            newLimit = estimatedLimit * gradient + (gradient == 1.0 ? Math.sqrt(estimatedLimit) : 0);
+        } else {
+            newLimit = Math.min(estimatedLimit * gradient, Math.max(inUse + Math.sqrt(inUse), estimatedLimit - 1));
+        }
+
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING));
+        int rounded = (int) Math.round(estimatedLimit);
+        if (rounded > limit) {
+            increases.incrementAndGet();
+        } else if (rounded < limit) {
+            decreases.incrementAndGet();
+        }
+        limit = rounded;
+        return rounded;
+    }
+
+}
@@ -10,8 +10,31 @@ public interface BasicDataSource {
 	
 	int getMaxConnections();
 
+	int getMinIdle();
+
+	long getMaxLifetime();
+	
+	long getStatementCacheHits();
+	
+	long getStatementCacheMisses();
+
 	long getBorrowTimeout();
 	
 	long getLockTimeout();
 	
+	/**
+	 * CLOSED, OPEN or HALF_OPEN, see {@link PoolStats#getCircuitState()}.
+	 */
+	String getCircuitState();
+	
+	/**
+	 * Telemetry accumulated since the pool was created.
+	 */
+	PoolStats getStats();
+	
+	/**
+	 * Telemetry of the last completed housekeeping window.
+	 */
+	PoolStats getRecentStats();
+	
 }
\ No newline at end of file
@@ -1,26 +1,47 @@
 package com.blade.jdbc.pool;
 
 import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
 import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
 import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.ObjectName;
 import javax.sql.DataSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class BasicDataSourceImpl implements DataSource, BasicDataSource {
+public class BasicDataSourceImpl implements DataSource, BasicDataSourceMXBean {
 	
     private static final Logger log = LoggerFactory.getLogger(BasicDataSourceImpl.class);
     
-    private final LinkedList<ConnectionWrapper> pool = new LinkedList<ConnectionWrapper>();
+    private final ConnectionBag bag;
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicBoolean fillPending = new AtomicBoolean();
+    final PoolMetrics metrics = new PoolMetrics();
+    private final CircuitBreaker breaker;
+    private final AdaptiveLimit adaptiveLimit;
+    private HistogramSnapshot lastHoldTime;
+    private HistogramSnapshot lastBorrowWait;
+    private final ExecutorService connectionCreator;
+    private final ScheduledExecutorService houseKeeper;
     
     private int loginTimeout = 10;
     private PrintWriter logWriter;
@@ -34,38 +55,155 @@ public class BasicDataSourceImpl implements DataSource, BasicDataSource {
     private final long borrowTimeout;
     private final int lockTimeout;
     private final int poolSize;
+    private final int minIdle;
+    private final long maxLifetime;
+    private final long keepaliveTime;
+    private final int validationTimeout;
+    private final int statementCacheSize;
+    private final long leakDetectionThreshold;
+    private final int leakTraceSampleRate;
+    private final boolean reclaimLeakedConnections;
+    private final long breakerCooldown;
+    private final Map<String, Lane> lanes = new HashMap<String, Lane>();
     
-    private long checkIdleConnectionsTime;
-    private int activeCount;
-    private int waitingThreads;
-    private boolean closed;
+    private volatile boolean closed;
+    private volatile PoolStats lastStats;
+    private volatile PoolStats recentStats;
+    private ObjectName mbeanName;
 
     public BasicDataSourceImpl(String name, String driver, String url, String user, String pass) {
+        this(name, driver, url, user, pass, new PoolConfig());
+    }
+
+    public BasicDataSourceImpl(String name, String driver, String url, String user, String pass, PoolConfig config) {
         try {
             this.name = name;
             this.driver = (Driver) Class.forName(driver).newInstance();
             this.url = url;
             this.user = user;
             this.password = pass;
-            this.keepAlive = 1800 * 1000L;
-            this.borrowTimeout = 3 * 1000L;
-            this.lockTimeout = -1;
-            this.poolSize = 10;
+            this.keepAlive = config.getIdleTimeout();
+            this.borrowTimeout = config.getBorrowTimeout();
+            this.lockTimeout = config.getLockTimeout();
+            this.poolSize = config.getMaxSize();
+            this.minIdle = Math.min(config.getMinIdle(), config.getMaxSize());
+            this.maxLifetime = config.getMaxLifetime();
+            this.keepaliveTime = config.getKeepaliveTime();
+            this.statementCacheSize = config.getStatementCacheSize();
+            this.leakDetectionThreshold = config.getLeakDetectionThreshold();
+            this.leakTraceSampleRate = config.getLeakTraceSampleRate();
+            this.reclaimLeakedConnections = config.isReclaimLeakedConnections();
+            this.breaker = new CircuitBreaker(config.getBreakerFailureThreshold());
+            this.breakerCooldown = config.getBreakerCooldown();
+            this.adaptiveLimit = config.isAdaptiveSizing() ? new AdaptiveLimit(Math.max(1, minIdle), poolSize) : null;
+            for (PoolConfig.LaneConfig lane : config.getLanes()) {
+                this.lanes.put(lane.name, new Lane(lane.name, Math.min(lane.maxConnections, poolSize), lane.borrowTimeout));
+            }
+            this.validationTimeout = (int) TimeUnit.MILLISECONDS.toSeconds(config.getValidationTimeout());
         } catch (Exception e) {
             throw new IllegalArgumentException("Invalid DataSource descriptor for " + name, e);
         }
+
+        this.bag = new ConnectionBag(!config.isVirtualThreads(), config.getMaxWaitingThreads(), new ConnectionBag.Listener() {
+            @Override
+            public void addBagItem(int waiting) {
+                metrics.recordWaiting(waiting);
+                fillPool();
+            }
+        });
+        this.connectionCreator = Executors.newSingleThreadExecutor(newThreadFactory("creator"));
+        this.houseKeeper = Executors.newSingleThreadScheduledExecutor(newThreadFactory("housekeeper"));
+        this.houseKeeper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    houseKeep();
+                } catch (Throwable e) {
+                    log.warn("Housekeeping failed on " + BasicDataSourceImpl.this, e);
+                }
+            }
+        }, config.getHousekeepingPeriod(), config.getHousekeepingPeriod(), TimeUnit.MILLISECONDS);
+        if (adaptiveLimit != null) {
+            this.lastHoldTime = metrics.holdTime.snapshot();
+            this.lastBorrowWait = metrics.borrowWait.snapshot();
+            this.houseKeeper.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        adaptLimit();
+                    } catch (Throwable e) {
+                        log.warn("Adaptive sizing failed on " + BasicDataSourceImpl.this, e);
+                    }
+                }
+            }, config.getAdaptivePeriod(), config.getAdaptivePeriod(), TimeUnit.MILLISECONDS);
+        }
+        if (leakDetectionThreshold > 0) {
+            long period = Math.max(100, Math.min(config.getHousekeepingPeriod(), leakDetectionThreshold / 2));
+            this.houseKeeper.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        detectLeaks();
+                    } catch (Throwable e) {
+                        log.warn("Leak detection failed on " + BasicDataSourceImpl.this, e);
+                    }
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        }
+
+        this.lastStats = getStats();
+        this.recentStats = lastStats.minus(lastStats, 0);
+        if (config.isRegisterMbeans()) {
+            registerMBean();
+        }
     }
-    
+
+    private void registerMBean() {
+        try {
+            ObjectName objectName = new ObjectName("com.blade.jdbc:type=Pool,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            mbeanName = objectName;
+        } catch (Exception e) {
+            log.warn("Cannot register MBean for " + toString(), e);
+        }
+    }
+
+    private ThreadFactory newThreadFactory(final String role) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "blade-jdbc-" + name + "-" + role);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Opens minIdle connections on the calling thread, so that the first requests find them ready.
+     */
+    public void prefill() throws SQLException {
+        while (!closed && breaker.isClosed() && bag.getIdleCount() < minIdle && reserveCapacity()) {
+            bag.add(createConnection());
+        }
+    }
+
     public void close() {
-        synchronized (pool) {
-            for (ConnectionWrapper connection : pool) {
-                connection.closeUnderlyingConnection();
+        closed = true;
+        connectionCreator.shutdownNow();
+        houseKeeper.shutdownNow();
+        if (mbeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+            } catch (Exception e) {
+                log.warn("Cannot unregister MBean for " + toString(), e);
             }
-            activeCount = 0;
-            closed = true;
-            pool.clear();
-            pool.notifyAll();
+            mbeanName = null;
+        }
+        for (ConnectionWrapper connection : bag.close()) {
+            connection.closeUnderlyingConnection();
         }
+        activeCount.set(0);
     }
 
     public String getName() {
@@ -79,7 +217,68 @@ public class BasicDataSourceImpl implements DataSource, BasicDataSource {
 
     @Override
     public Connection getConnection() throws SQLException {
-    	return borrowConnection();
+        String lane = LaneContext.get();
+        if (lane != null) {
+            return getLaneConnection(lane);
+        }
+        return borrowConnection(TimeUnit.MILLISECONDS.toNanos(borrowTimeout), null);
+    }
+
+    /**
+     * Borrows a connection through a lane added with {@link PoolConfig#addLane(String, int, long)},
+     * waiting at most the lane's borrowTimeout.
+     */
+    public Connection getLaneConnection(String name) throws SQLException {
+        Lane lane = lanes.get(name);
+        if (lane == null) {
+            throw new SQLException("Unknown lane " + name + " on " + toString());
+        }
+
+        long startTime = System.nanoTime();
+        long timeout = TimeUnit.MILLISECONDS.toNanos(lane.borrowTimeout);
+        try {
+            if (!lane.permits.tryAcquire(timeout, TimeUnit.NANOSECONDS)) {
+                metrics.borrowWait.record(System.nanoTime() - startTime);
+                metrics.timeouts.incrementAndGet();
+                throw new SQLException("Lane " + name + " timed out waiting for a free connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a free connection");
+        }
+
+        try {
+            return borrowConnection(timeout - (System.nanoTime() - startTime), lane);
+        } catch (SQLException e) {
+            lane.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * A DataSource whose connections are all borrowed through the given lane, e.g. for
+     * <code>Base.open("batch", pool.lane("batch"))</code>.
+     */
+    public DataSource lane(String name) {
+        if (!lanes.containsKey(name)) {
+            throw new IllegalArgumentException("Unknown lane " + name + " on " + toString());
+        }
+        return new LaneDataSource(this, name);
+    }
+
+    /**
+     * Number of connections currently held through a lane.
+     */
+    public int getLaneInUse(String name) {
+        Lane lane = lanes.get(name);
+        return lane != null ? lane.getInUse() : 0;
+    }
+
+    /**
+     * Borrows a connection, waiting at most the given time instead of borrowTimeout.
+     */
+    public Connection getConnection(long timeout, TimeUnit unit) throws SQLException {
+        return borrowConnection(unit.toNanos(timeout), null);
     }
 
     @Override
@@ -115,46 +314,171 @@ public class BasicDataSourceImpl implements DataSource, BasicDataSource {
         return false;
     }
 
-    private ConnectionWrapper borrowConnection() throws SQLException {
-        long accessTime = System.currentTimeMillis();
-        long waited = 0;
-
-        if (accessTime > checkIdleConnectionsTime) {
-            checkIdleConnectionsTime = accessTime + keepAlive / 10;
-            closeIdleConnections(accessTime - keepAlive);
+    /**
+     * @param lane the lane whose permit the caller holds, or null
+     */
+    private ConnectionHandle borrowConnection(long timeout, Lane lane) throws SQLException {
+        long startTime = System.nanoTime();
+        ConnectionWrapper connection;
+        try {
+            // New connections are opened by the creator thread and handed over by the bag
+            // While the breaker is open no connection is being opened, so there is nothing to wait for
+            connection = bag.borrow(breaker.isClosed() ? timeout : 0);
+        } catch (SQLTransientConnectionException e) {
+            metrics.rejections.incrementAndGet();
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a free connection");
         }
 
-        reuse:
-        synchronized (pool) {
-            while (!closed) {
-                // First try to get an idle object from the queue
-                ConnectionWrapper connection = pool.pollFirst();
-                if (connection != null) {
-                    connection.lastAccessTime = accessTime;
-                    return connection;
-                }
-
-                // If capacity permits, create a new object out of the lock
-                if (activeCount < poolSize) {
-                	activeCount++;
-                    break reuse;
-                }
+        long now = System.nanoTime();
+        metrics.borrowWait.record(now - startTime);
+        if (connection == null) {
+            if (closed) {
+                throw new SQLException("DataSource is closed");
+            }
+            if (!breaker.isClosed()) {
+                metrics.rejections.incrementAndGet();
+                throw new SQLTransientConnectionException("Database unreachable, circuit breaker open on " + toString());
+            }
+            metrics.timeouts.incrementAndGet();
+            throw new SQLException("DataSource timed out waiting for a free connection");
+        }
+        Thread borrower = null;
+        Throwable borrowSite = null;
+        if (leakDetectionThreshold > 0) {
+            borrower = Thread.currentThread();
+            if (leakTraceSampleRate == 1 || ThreadLocalRandom.current().nextInt(leakTraceSampleRate) == 0) {
+                borrowSite = new Exception("Connection borrowed here");
+            }
+        }
+        connection.lastAccessTime = System.currentTimeMillis();
+        return connection.checkOut(now, borrower, borrowSite, lane);
+    }
 
-                // Lastly wait until an existing connection becomes free
-                waitForFreeConnection(borrowTimeout - waited);
-                waited = System.currentTimeMillis() - accessTime;
+    private boolean reserveCapacity() {
+        for (;;) {
+            int count = activeCount.get();
+            if (count >= getLimit()) {
+                return false;
+            }
+            if (activeCount.compareAndSet(count, count + 1)) {
+                return true;
             }
-            throw new SQLException("DataSource is closed");
         }
+    }
 
+    private ConnectionWrapper createConnection() throws SQLException {
+        long startTime = System.nanoTime();
         ConnectionWrapper connection = null;
         try {
-            return connection = new ConnectionWrapper(getRawConnection(), this, accessTime);
+            connection = new ConnectionWrapper(getRawConnection(), this, System.currentTimeMillis(), statementCacheSize);
+            try {
+                connection.initState();
+            } catch (SQLException e) {
+                connection.closeUnderlyingConnection();
+                connection = null;
+                throw e;
+            }
+            if (maxLifetime > 0) {
+                // Spread retirement so that connections opened together do not all reconnect together
+                long variance = maxLifetime > 10000 ? ThreadLocalRandom.current().nextLong(maxLifetime / 40) : 0;
+                connection.expireTime = connection.createTime + maxLifetime - variance;
+            }
+            metrics.creation.record(System.nanoTime() - startTime);
+            metrics.connectionsCreated.incrementAndGet();
+            if (breaker.onSuccess()) {
+                log.info("Circuit breaker closed on " + toString() + ", database reachable again");
+            }
+            return connection;
         } finally {
-            if (connection == null) decreaseCount();
+            if (connection == null) {
+                activeCount.decrementAndGet();
+                metrics.createFailures.incrementAndGet();
+                if (breaker.onFailure()) {
+                    log.warn("Circuit breaker opened on " + toString() + " after repeated connection failures,"
+                            + " failing borrows fast for " + breakerCooldown + " ms");
+                    scheduleProbe();
+                }
+            }
+        }
+    }
+
+    private void scheduleProbe() {
+        try {
+            houseKeeper.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    probe();
+                }
+            }, breakerCooldown, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // closed
+        }
+    }
+
+    /**
+     * Opens one connection after the cool-down of an open breaker. Success closes the breaker and
+     * refills the pool, failure opens it again for another cool-down.
+     */
+    private void probe() {
+        if (closed || !breaker.tryHalfOpen()) {
+            return;
+        }
+        try {
+            connectionCreator.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!reserveCapacity()) {
+                        // every connection is still open, so there is nothing to probe
+                        breaker.onSuccess();
+                        return;
+                    }
+                    try {
+                        bag.add(createConnection());
+                        fillPool();
+                    } catch (SQLException e) {
+                        log.debug("Circuit breaker probe failed on " + BasicDataSourceImpl.this, e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // closed
         }
     }
 
+    /**
+     * Asks the creator thread to top the pool up, unless a request is already pending.
+     */
+    private void fillPool() {
+        if (!closed && fillPending.compareAndSet(false, true)) {
+            try {
+                connectionCreator.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        fillPending.set(false);
+                        while (!closed && breaker.isClosed() && needsConnection() && reserveCapacity()) {
+                            try {
+                                bag.add(createConnection());
+                            } catch (SQLException e) {
+                                log.warn("Cannot open connection on " + BasicDataSourceImpl.this, e);
+                                return;
+                            }
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                fillPending.set(false);
+            }
+        }
+    }
+
+    private boolean needsConnection() {
+        int idle = bag.getIdleCount();
+        return idle < minIdle || bag.getWaitingThreadCount() > idle;
+    }
+
     private Connection getRawConnection() throws SQLException {
         Properties props = new Properties();
         if (user != null) props.put("user", user);
@@ -185,66 +509,156 @@ public class BasicDataSourceImpl implements DataSource, BasicDataSource {
         }
     }
 
-    private void closeIdleConnections(long closeTime) {
-        ArrayList<ConnectionWrapper> idleConnections = new ArrayList<ConnectionWrapper>();
-
-        synchronized (pool) {
-            for (Iterator<ConnectionWrapper> iterator = pool.iterator(); iterator.hasNext(); ) {
-                ConnectionWrapper connection = iterator.next();
-                if (connection.lastAccessTime < closeTime) {
-                    idleConnections.add(connection);
-                    iterator.remove();
-                    decreaseCount();
+    /**
+     * Runs on the housekeeper thread: closes connections idle for longer than keepAlive, or above
+     * the adaptive limit, while the pool holds more than minIdle of them, retires expired ones, validates the rest after
+     * keepaliveTime, and finally tops the pool back up.
+     */
+    private void houseKeep() {
+        long now = System.currentTimeMillis();
+        int idle = bag.getIdleCount();
+        ArrayList<ConnectionWrapper> closing = new ArrayList<ConnectionWrapper>();
+
+        for (ConnectionWrapper connection : bag.values()) {
+            boolean retire = isExpired(connection, now)
+                    || (idle > minIdle && (connection.lastAccessTime < now - keepAlive || activeCount.get() > getLimit()));
+            if (retire) {
+                if (bag.reserve(connection) && bag.remove(connection)) {
+                    activeCount.decrementAndGet();
+                    closing.add(connection);
+                    idle--;
+                }
+            } else if (keepaliveTime > 0
+                    && now - Math.max(connection.lastAccessTime, connection.lastKeepaliveTime) > keepaliveTime
+                    && bag.reserve(connection)) {
+                if (isAlive(connection)) {
+                    connection.lastKeepaliveTime = now;
+                    bag.unreserve(connection);
+                } else if (bag.remove(connection)) {
+                    activeCount.decrementAndGet();
+                    closing.add(connection);
+                    idle--;
                 }
             }
         }
 
-        if (!idleConnections.isEmpty()) {
-            log.debug("Closing " + idleConnections.size() + " idle connections on " + toString());
-            for (ConnectionWrapper connection : idleConnections) {
+        if (!closing.isEmpty()) {
+            log.debug("Closing " + closing.size() + " idle connections on " + toString());
+            for (ConnectionWrapper connection : closing) {
                 connection.closeUnderlyingConnection();
             }
         }
+        fillPool();
+
+        // Close the telemetry window
+        PoolStats stats = getStats();
+        recentStats = stats.minus(lastStats, metrics.resetWindowPeakWaiting());
+        lastStats = stats;
     }
 
-    private void waitForFreeConnection(long waitTime) throws SQLException {
-        if (waitTime <= 0) {
-            throw new SQLException("DataSource timed out waiting for a free connection");
+    /**
+     * Runs on the housekeeper thread: feeds the last period's hold times and borrow waits to the
+     * adaptive limit. Connections above a lowered limit are retired as they are returned.
+     */
+    private void adaptLimit() {
+        HistogramSnapshot holdTime = metrics.holdTime.snapshot();
+        HistogramSnapshot borrowWait = metrics.borrowWait.snapshot();
+        int inUse = activeCount.get() - bag.getIdleCount();
+        int previous = adaptiveLimit.get();
+        int limit = adaptiveLimit.update(holdTime.minus(lastHoldTime), borrowWait.minus(lastBorrowWait), inUse);
+        lastHoldTime = holdTime;
+        lastBorrowWait = borrowWait;
+
+        if (limit != previous) {
+            log.debug("Connection limit of " + toString() + " changed from " + previous + " to " + limit);
+            if (limit > previous) {
+                fillPool();
+            }
         }
+    }
 
-        waitingThreads++;
-        try {
-            pool.wait(waitTime);
-        } catch (InterruptedException e) {
-            throw new SQLException("Interrupted while waiting for a free connection");
-        }
-        waitingThreads--;
+    private int getLimit() {
+        return adaptiveLimit != null ? adaptiveLimit.get() : poolSize;
     }
 
-    private void decreaseCount() {
-        synchronized (pool) {
-            if (!closed) {
-            	activeCount--;
-                if (waitingThreads > 0) pool.notify();
+    /**
+     * Runs on the housekeeper thread: reports connections held for longer than
+     * leakDetectionThreshold, once per borrow, and takes them back if so configured. Everything it
+     * reports comes from one borrow's handle, and it reclaims a connection only by ending that
+     * same borrow, so a connection returned and borrowed again meanwhile is left alone.
+     */
+    private void detectLeaks() {
+        long now = System.nanoTime();
+        long threshold = TimeUnit.MILLISECONDS.toNanos(leakDetectionThreshold);
+        for (ConnectionWrapper connection : bag.values()) {
+            ConnectionHandle borrowed = connection.handle;
+            if (borrowed == null || borrowed.leakReported || now - borrowed.borrowNanos < threshold) {
+                continue;
+            }
+            borrowed.leakReported = true;
+            metrics.leaks.incrementAndGet();
+
+            String message = "Connection leak detected on " + toString() + ": held for "
+                    + TimeUnit.NANOSECONDS.toMillis(now - borrowed.borrowNanos) + " ms by thread "
+                    + (borrowed.borrower != null ? borrowed.borrower.getName() : "?");
+            if (borrowed.borrowSite != null) {
+                log.warn(message, borrowed.borrowSite);
+            } else {
+                log.warn(message + " (borrow site not sampled, see leakTraceSampleRate)");
+            }
+
+            if (reclaimLeakedConnections && connection.checkIn(borrowed) && bag.remove(connection)) {
+                log.warn("Reclaiming leaked connection on " + toString());
+                Lane.release(borrowed);
+                activeCount.decrementAndGet();
+                connection.abandon();
+                fillPool();
             }
         }
     }
-    
-    void releaseConnection(ConnectionWrapper connection) {
-        if (connection.invalidate) {
-            decreaseCount();
-        } else {
-            synchronized (pool) {
-                if (!closed) {
-                    pool.addFirst(connection);
-                    if (waitingThreads > 0) pool.notify();
-                    return;
-                }
+
+    private boolean isAlive(ConnectionWrapper connection) {
+        try {
+            return connection.delegate.isValid(validationTimeout);
+        } catch (Throwable e) {
+            log.debug("Connection validation failed on " + toString(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Takes a connection back after its borrower closed the handle of the given borrow.
+     */
+    void releaseConnection(ConnectionWrapper connection, ConnectionHandle borrowed) {
+        long heldNanos = System.nanoTime() - borrowed.borrowNanos;
+        metrics.holdTime.record(heldNanos);
+        Lane.release(borrowed);
+        if (borrowed.leakReported) {
+            log.info("Previously reported leaked connection returned to " + toString() + " after "
+                    + TimeUnit.NANOSECONDS.toMillis(heldNanos) + " ms");
+        }
+        if (!connection.invalidate && !closed && !isExpired(connection, System.currentTimeMillis())
+                && activeCount.get() <= getLimit()) {
+            try {
+                connection.resetState();
+            } catch (SQLException e) {
+                log.warn("Cannot reset connection state on " + toString(), e);
             }
+            if (!connection.invalidate && bag.requite(connection)) {
+                return;
+            }
+        }
+        if (bag.remove(connection)) {
+            activeCount.decrementAndGet();
+            fillPool();
         }
         connection.closeUnderlyingConnection();
     }
 
+    private boolean isExpired(ConnectionWrapper connection, long now) {
+        return maxLifetime > 0 && now > connection.expireTime;
+    }
+
     @Override
     public String getUrl() {
         return url;
@@ -252,14 +666,12 @@ public class BasicDataSourceImpl implements DataSource, BasicDataSource {
 
     @Override
     public int activeCount() {
-        return activeCount;
+        return activeCount.get();
     }
 
     @Override
     public int getIdleConnections() {
-        synchronized (pool) {
-            return pool.size();
-        }
+        return bag.getIdleCount();
     }
     
     @Override
@@ -267,6 +679,48 @@ public class BasicDataSourceImpl implements DataSource, BasicDataSource {
         return poolSize;
     }
 
+    @Override
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    @Override
+    public long getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    @Override
+    public long getStatementCacheHits() {
+        return metrics.statementCacheHits.get();
+    }
+
+    @Override
+    public long getStatementCacheMisses() {
+        return metrics.statementCacheMisses.get();
+    }
+
+    @Override
+    public PoolStats getStats() {
+        return new PoolStats(System.currentTimeMillis(), 0, getLimit(), activeCount.get(), bag.getIdleCount(),
+                bag.getWaitingThreadCount(), metrics.getPeakWaiting(), metrics.connectionsCreated.get(),
+                metrics.createFailures.get(), metrics.timeouts.get(), metrics.rejections.get(),
+                metrics.invalidations.get(), metrics.leaks.get(), breaker.getState(), breaker.trips.get(),
+                adaptiveLimit != null ? adaptiveLimit.increases.get() : 0,
+                adaptiveLimit != null ? adaptiveLimit.decreases.get() : 0,
+                metrics.statementCacheHits.get(), metrics.statementCacheMisses.get(),
+                metrics.borrowWait.snapshot(), metrics.holdTime.snapshot(), metrics.creation.snapshot());
+    }
+
+    @Override
+    public String getCircuitState() {
+        return breaker.getState();
+    }
+
+    @Override
+    public PoolStats getRecentStats() {
+        return recentStats;
+    }
+
     @Override
     public long getBorrowTimeout() {
         return borrowTimeout;
@@ -0,0 +1,9 @@
+package com.blade.jdbc.pool;
+
+/**
+ * JMX view of a pool, registered as <code>com.blade.jdbc:type=Pool,name=&lt;name&gt;</code>
+ * when {@link PoolConfig#setRegisterMbeans(boolean)} is enabled.
+ */
+public interface BasicDataSourceMXBean extends BasicDataSource {
+	
+}
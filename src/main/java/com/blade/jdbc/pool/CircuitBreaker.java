@@ -0,0 +1,75 @@
+package com.blade.jdbc.pool;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks consecutive failures to open a connection. After failureThreshold of them the breaker
+ * opens: borrowers stop waiting for new connections and the pool stops trying to open them, until
+ * a single probe succeeds.
+ */
+class CircuitBreaker {
+
+    static final int CLOSED = 0;
+    static final int OPEN = 1;
+    static final int HALF_OPEN = 2;
+
+    private final int failureThreshold;
+    private final AtomicInteger state = new AtomicInteger(CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    final AtomicLong trips = new AtomicLong();
+
+    /**
+     * @param failureThreshold consecutive failures that open the breaker, 0 never opens it
+     */
+    CircuitBreaker(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    boolean isClosed() {
+        return state.get() == CLOSED;
+    }
+
+    /**
+     * @return true if this success closed an open breaker
+     */
+    boolean onSuccess() {
+        consecutiveFailures.set(0);
+        return state.getAndSet(CLOSED) != CLOSED;
+    }
+
+    /**
+     * @return true if this failure opened the breaker
+     */
+    boolean onFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (failureThreshold <= 0) {
+            return false;
+        }
+        if (state.compareAndSet(HALF_OPEN, OPEN)
+                || (failures >= failureThreshold && state.compareAndSet(CLOSED, OPEN))) {
+            trips.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Lets exactly one caller probe an open breaker.
+     */
+    boolean tryHalfOpen() {
+        return state.compareAndSet(OPEN, HALF_OPEN);
+    }
+
+    String getState() {
+        switch (state.get()) {
+            case OPEN:
+                return "OPEN";
+            case HALF_OPEN:
+                return "HALF_OPEN";
+            default:
+                return "CLOSED";
+        }
+    }
+
+}
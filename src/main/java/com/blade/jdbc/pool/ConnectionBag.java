@@ -0,0 +1,314 @@
+package com.blade.jdbc.pool;
+
+import java.lang.ref.WeakReference;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free holder of pooled connections.
+ * <p>
+ * A borrow first looks at the connections the calling thread returned last, then scans the
+ * shared list, and finally joins a FIFO queue of waiters. A returned or newly opened connection
+ * is handed straight to the oldest waiter, and threads arriving while others wait queue up
+ * behind them instead of taking the connection first. Ownership is decided by a CAS on
+ * {@link ConnectionWrapper#state}, so no monitor is held on either the borrow or the return path.
+ */
+class ConnectionBag {
+
+    static final int STATE_NOT_IN_USE = 0;
+    static final int STATE_IN_USE = 1;
+    static final int STATE_REMOVED = -1;
+    static final int STATE_RESERVED = -2;
+
+    private static final int THREAD_LIST_SIZE = 16;
+
+    private static final AtomicIntegerFieldUpdater<ConnectionWrapper> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(ConnectionWrapper.class, "state");
+
+    private final CopyOnWriteArrayList<ConnectionWrapper> sharedList = new CopyOnWriteArrayList<ConnectionWrapper>();
+    private final ConcurrentLinkedQueue<Waiter> waitQueue = new ConcurrentLinkedQueue<Waiter>();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final ThreadLocal<List<WeakReference<ConnectionWrapper>>> threadList;
+
+    private final int maxWaiters;
+    private final Listener listener;
+    private volatile boolean closed;
+
+    /**
+     * @param threadAffinity whether returned connections are remembered per thread; there is no
+     *                       point in it when every borrow runs on a new (virtual) thread
+     * @param maxWaiters     how many threads may queue for a connection, -1 for no limit
+     */
+    ConnectionBag(boolean threadAffinity, int maxWaiters, Listener listener) {
+        this.maxWaiters = maxWaiters;
+        this.listener = listener;
+        this.threadList = !threadAffinity ? null : new ThreadLocal<List<WeakReference<ConnectionWrapper>>>() {
+            @Override
+            protected List<WeakReference<ConnectionWrapper>> initialValue() {
+                return new ArrayList<WeakReference<ConnectionWrapper>>(THREAD_LIST_SIZE);
+            }
+        };
+    }
+
+    /**
+     * Takes an idle connection out of the bag.
+     *
+     * @param timeout how long to wait for a returned connection, in nanoseconds; 0 does not wait
+     * @return the connection, or null if none became available in time
+     * @throws SQLTransientConnectionException if the queue of waiting threads is full
+     */
+    ConnectionWrapper borrow(long timeout) throws InterruptedException, SQLException {
+        // Idle connections are only taken directly while nobody is queued, so that threads
+        // arriving late cannot overtake the ones already waiting
+        if (waitQueue.isEmpty()) {
+            // Try the connections this thread used last
+            if (threadList != null) {
+                List<WeakReference<ConnectionWrapper>> list = threadList.get();
+                for (int i = list.size() - 1; i >= 0; i--) {
+                    ConnectionWrapper connection = list.remove(i).get();
+                    if (connection != null && STATE.compareAndSet(connection, STATE_NOT_IN_USE, STATE_IN_USE)) {
+                        return connection;
+                    }
+                }
+            }
+
+            // Then any idle connection in the shared list
+            for (ConnectionWrapper connection : sharedList) {
+                if (STATE.compareAndSet(connection, STATE_NOT_IN_USE, STATE_IN_USE)) {
+                    return connection;
+                }
+            }
+        }
+
+        if (!admitWaiter()) {
+            throw new SQLTransientConnectionException("Too many threads waiting for a connection: " + maxWaiters);
+        }
+        Waiter waiter = new Waiter(Thread.currentThread());
+        waitQueue.add(waiter);
+        try {
+            listener.addBagItem(waiters.get());
+
+            // A connection may have become idle while this thread was queuing; it belongs to the
+            // oldest waiter, which is not necessarily this one
+            for (ConnectionWrapper connection : sharedList) {
+                if (waiter.status != Waiter.WAITING) {
+                    break;
+                }
+                if (STATE.compareAndSet(connection, STATE_NOT_IN_USE, STATE_IN_USE)) {
+                    handOff(connection);
+                }
+            }
+
+            // Lastly wait for a returning thread or the pool to hand one over
+            long deadline = System.nanoTime() + timeout;
+            while (waiter.status == Waiter.WAITING && !closed && timeout > 0) {
+                LockSupport.parkNanos(this, timeout);
+                if (Thread.interrupted()) {
+                    if (waiter.cancel()) {
+                        throw new InterruptedException();
+                    }
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                timeout = deadline - System.nanoTime();
+            }
+            return waiter.cancel() ? null : waiter.connection;
+        } finally {
+            waitQueue.remove(waiter);
+            waiters.decrementAndGet();
+        }
+    }
+
+    private boolean admitWaiter() {
+        if (maxWaiters < 0) {
+            waiters.incrementAndGet();
+            return true;
+        }
+        for (;;) {
+            int count = waiters.get();
+            if (count >= maxWaiters) {
+                return false;
+            }
+            if (waiters.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives a connection the caller has just set in use to the oldest waiter, or makes it idle
+     * again if nobody waits.
+     */
+    private void handOff(ConnectionWrapper connection) {
+        do {
+            Waiter waiter;
+            while ((waiter = waitQueue.poll()) != null) {
+                if (waiter.fulfill(connection)) {
+                    return;
+                }
+            }
+            connection.state = STATE_NOT_IN_USE;
+            // a thread that queued after the poll may already have scanned past this connection
+        } while (!waitQueue.isEmpty() && STATE.compareAndSet(connection, STATE_NOT_IN_USE, STATE_IN_USE));
+    }
+
+    /**
+     * Returns a borrowed connection, handing it straight to the oldest waiter if there is one.
+     *
+     * @return false if the connection was removed from the bag while it was borrowed
+     */
+    boolean requite(ConnectionWrapper connection) {
+        if (!STATE.compareAndSet(connection, STATE_IN_USE, STATE_NOT_IN_USE)) {
+            return false;
+        }
+
+        if (!waitQueue.isEmpty()) {
+            if (STATE.compareAndSet(connection, STATE_NOT_IN_USE, STATE_IN_USE)) {
+                handOff(connection);
+            }
+        } else if (threadList != null) {
+            List<WeakReference<ConnectionWrapper>> list = threadList.get();
+            if (list.size() == THREAD_LIST_SIZE) {
+                list.remove(0);
+            }
+            list.add(new WeakReference<ConnectionWrapper>(connection));
+        }
+        return true;
+    }
+
+    /**
+     * Adds a freshly opened idle connection, handing it to the oldest waiter if there is one.
+     */
+    void add(ConnectionWrapper connection) {
+        connection.state = STATE_NOT_IN_USE;
+        sharedList.add(connection);
+        offerToWaiters(connection);
+    }
+
+    /**
+     * Marks an idle connection as reserved so that no other thread can borrow it.
+     */
+    boolean reserve(ConnectionWrapper connection) {
+        return STATE.compareAndSet(connection, STATE_NOT_IN_USE, STATE_RESERVED);
+    }
+
+    /**
+     * Makes a reserved connection available again.
+     */
+    void unreserve(ConnectionWrapper connection) {
+        if (STATE.compareAndSet(connection, STATE_RESERVED, STATE_NOT_IN_USE)) {
+            offerToWaiters(connection);
+        }
+    }
+
+    private void offerToWaiters(ConnectionWrapper connection) {
+        if (!waitQueue.isEmpty() && STATE.compareAndSet(connection, STATE_NOT_IN_USE, STATE_IN_USE)) {
+            handOff(connection);
+        }
+    }
+
+    /**
+     * Removes a borrowed or reserved connection from the bag.
+     */
+    boolean remove(ConnectionWrapper connection) {
+        if (!STATE.compareAndSet(connection, STATE_IN_USE, STATE_REMOVED)
+                && !STATE.compareAndSet(connection, STATE_RESERVED, STATE_REMOVED)) {
+            return false;
+        }
+        return sharedList.remove(connection);
+    }
+
+    List<ConnectionWrapper> values() {
+        return new ArrayList<ConnectionWrapper>(sharedList);
+    }
+
+    /**
+     * Empties the bag and returns the idle connections it held. Connections still in use are
+     * left to their borrowers; waiting threads give up.
+     */
+    List<ConnectionWrapper> close() {
+        closed = true;
+        for (Waiter waiter : waitQueue) {
+            LockSupport.unpark(waiter.thread);
+        }
+        List<ConnectionWrapper> idleConnections = new ArrayList<ConnectionWrapper>();
+        for (ConnectionWrapper connection : sharedList) {
+            if (STATE.compareAndSet(connection, STATE_NOT_IN_USE, STATE_REMOVED)) {
+                idleConnections.add(connection);
+            }
+        }
+        sharedList.clear();
+        return idleConnections;
+    }
+
+    int size() {
+        return sharedList.size();
+    }
+
+    int getIdleCount() {
+        int count = 0;
+        for (ConnectionWrapper connection : sharedList) {
+            if (connection.state == STATE_NOT_IN_USE) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    int getWaitingThreadCount() {
+        return waiters.get();
+    }
+
+    /**
+     * Notified when a borrower is about to wait, so the pool can open another connection.
+     */
+    interface Listener {
+        void addBagItem(int waiting);
+    }
+
+    /**
+     * A queued borrower. The thread handing it a connection and the borrower giving up race on
+     * status, so a connection is never handed to a thread that already left.
+     */
+    private static final class Waiter {
+        static final int WAITING = 0;
+        static final int FULFILLED = 1;
+        static final int CANCELLED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Waiter> STATUS =
+                AtomicIntegerFieldUpdater.newUpdater(Waiter.class, "status");
+
+        final Thread thread;
+        volatile int status;
+        volatile ConnectionWrapper connection;
+
+        Waiter(Thread thread) {
+            this.thread = thread;
+        }
+
+        boolean fulfill(ConnectionWrapper connection) {
+            this.connection = connection;
+            if (STATUS.compareAndSet(this, WAITING, FULFILLED)) {
+                LockSupport.unpark(thread);
+                return true;
+            }
+            this.connection = null;
+            return false;
+        }
+
+        /**
+         * @return false if a connection was handed over first
+         */
+        boolean cancel() {
+            return status == CANCELLED || STATUS.compareAndSet(this, WAITING, CANCELLED);
+        }
+    }
+
+}
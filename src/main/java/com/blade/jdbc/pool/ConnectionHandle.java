@@ -0,0 +1,289 @@
+package com.blade.jdbc.pool;
+
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.ClientInfoStatus;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+/**
+ * The connection a borrower gets: it forwards to the pooled {@link ConnectionWrapper} for the
+ * length of one borrow. Once closed, by its borrower or by the leak detector, it stays closed,
+ * so a reference kept past close() cannot reach the connection after it was lent to someone else.
+ */
+final class ConnectionHandle implements Connection {
+	final ConnectionWrapper connection;
+	// The borrow this handle stands for, fixed when it is checked out
+	final long borrowNanos;
+	final Thread borrower;
+	final Throwable borrowSite;
+	// Lane the connection was borrowed through, its permit is returned by Lane.release
+	final Lane lane;
+	volatile boolean leakReported;
+
+	ConnectionHandle(ConnectionWrapper connection, long borrowNanos, Thread borrower, Throwable borrowSite, Lane lane) {
+		this.connection = connection;
+		this.borrowNanos = borrowNanos;
+		this.borrower = borrower;
+		this.borrowSite = borrowSite;
+		this.lane = lane;
+	}
+
+	private ConnectionWrapper open() throws SQLException {
+		if (connection.handle != this) {
+			throw new SQLException("Connection is closed");
+		}
+		return connection;
+	}
+
+	public void close() throws SQLException {
+		if (connection.checkIn(this)) {
+			connection.dataSource.releaseConnection(connection, this);
+		}
+	}
+
+	public boolean isClosed() throws SQLException {
+		return connection.handle != this;
+	}
+
+	public boolean isValid(int timeout) throws SQLException {
+		return connection.handle == this && connection.isValid(timeout);
+	}
+
+	public Statement createStatement() throws SQLException {
+		return open().createStatement();
+	}
+
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		return open().prepareStatement(sql);
+	}
+
+	public CallableStatement prepareCall(String sql) throws SQLException {
+		return open().prepareCall(sql);
+	}
+
+	public String nativeSQL(String sql) throws SQLException {
+		return open().nativeSQL(sql);
+	}
+
+	public void setAutoCommit(boolean autoCommit) throws SQLException {
+		open().setAutoCommit(autoCommit);
+	}
+
+	public boolean getAutoCommit() throws SQLException {
+		return open().getAutoCommit();
+	}
+
+	public void commit() throws SQLException {
+		open().commit();
+	}
+
+	public void rollback() throws SQLException {
+		open().rollback();
+	}
+
+	public DatabaseMetaData getMetaData() throws SQLException {
+		return open().getMetaData();
+	}
+
+	public void setReadOnly(boolean readOnly) throws SQLException {
+		open().setReadOnly(readOnly);
+	}
+
+	public boolean isReadOnly() throws SQLException {
+		return open().isReadOnly();
+	}
+
+	public void setCatalog(String catalog) throws SQLException {
+		open().setCatalog(catalog);
+	}
+
+	public String getCatalog() throws SQLException {
+		return open().getCatalog();
+	}
+
+	public void setTransactionIsolation(int level) throws SQLException {
+		open().setTransactionIsolation(level);
+	}
+
+	public int getTransactionIsolation() throws SQLException {
+		return open().getTransactionIsolation();
+	}
+
+	public SQLWarning getWarnings() throws SQLException {
+		return open().getWarnings();
+	}
+
+	public void clearWarnings() throws SQLException {
+		open().clearWarnings();
+	}
+
+	public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+		return open().createStatement(resultSetType, resultSetConcurrency);
+	}
+
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
+			throws SQLException {
+		return open().prepareStatement(sql, resultSetType, resultSetConcurrency);
+	}
+
+	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		return open().prepareCall(sql, resultSetType, resultSetConcurrency);
+	}
+
+	public Map<String, Class<?>> getTypeMap() throws SQLException {
+		return open().getTypeMap();
+	}
+
+	public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
+		open().setTypeMap(map);
+	}
+
+	public void setHoldability(int holdability) throws SQLException {
+		open().setHoldability(holdability);
+	}
+
+	public int getHoldability() throws SQLException {
+		return open().getHoldability();
+	}
+
+	public Savepoint setSavepoint() throws SQLException {
+		return open().setSavepoint();
+	}
+
+	public Savepoint setSavepoint(String name) throws SQLException {
+		return open().setSavepoint(name);
+	}
+
+	public void rollback(Savepoint savepoint) throws SQLException {
+		open().rollback(savepoint);
+	}
+
+	public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+		open().releaseSavepoint(savepoint);
+	}
+
+	public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability)
+			throws SQLException {
+		return open().createStatement(resultSetType, resultSetConcurrency, resultSetHoldability);
+	}
+
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency,
+			int resultSetHoldability) throws SQLException {
+		return open().prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+	}
+
+	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency,
+			int resultSetHoldability) throws SQLException {
+		return open().prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+	}
+
+	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+		return open().prepareStatement(sql, autoGeneratedKeys);
+	}
+
+	public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+		return open().prepareStatement(sql, columnIndexes);
+	}
+
+	public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+		return open().prepareStatement(sql, columnNames);
+	}
+
+	public Clob createClob() throws SQLException {
+		return open().createClob();
+	}
+
+	public Blob createBlob() throws SQLException {
+		return open().createBlob();
+	}
+
+	public NClob createNClob() throws SQLException {
+		return open().createNClob();
+	}
+
+	public SQLXML createSQLXML() throws SQLException {
+		return open().createSQLXML();
+	}
+
+	public void setClientInfo(String name, String value) throws SQLClientInfoException {
+		checkClientInfo();
+		connection.setClientInfo(name, value);
+	}
+
+	public void setClientInfo(Properties properties) throws SQLClientInfoException {
+		checkClientInfo();
+		connection.setClientInfo(properties);
+	}
+
+	private void checkClientInfo() throws SQLClientInfoException {
+		if (connection.handle != this) {
+			throw new SQLClientInfoException("Connection is closed", Collections.<String, ClientInfoStatus> emptyMap());
+		}
+	}
+
+	public String getClientInfo(String name) throws SQLException {
+		return open().getClientInfo(name);
+	}
+
+	public Properties getClientInfo() throws SQLException {
+		return open().getClientInfo();
+	}
+
+	public Array createArrayOf(String typeName, Object[] elements) throws SQLException {
+		return open().createArrayOf(typeName, elements);
+	}
+
+	public Struct createStruct(String typeName, Object[] attributes) throws SQLException {
+		return open().createStruct(typeName, attributes);
+	}
+
+	public void setSchema(String schema) throws SQLException {
+		open().setSchema(schema);
+	}
+
+	public String getSchema() throws SQLException {
+		return open().getSchema();
+	}
+
+	public void abort(Executor executor) throws SQLException {
+		open().abort(executor);
+	}
+
+	public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
+		open().setNetworkTimeout(executor, milliseconds);
+	}
+
+	public int getNetworkTimeout() throws SQLException {
+		return open().getNetworkTimeout();
+	}
+
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		return open().unwrap(iface);
+	}
+
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return open().isWrapperFor(iface);
+	}
+
+	@Override
+	public String toString() {
+		return "ConnectionHandle{" + connection.dataSource.getName() + (connection.handle == this ? "" : ", closed") + '}';
+	}
+
+}
@@ -10,6 +10,7 @@ import java.sql.NClob;
 import java.sql.PreparedStatement;
 import java.sql.SQLClientInfoException;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.sql.SQLWarning;
 import java.sql.SQLXML;
 import java.sql.Savepoint;
@@ -18,20 +19,137 @@ import java.sql.Struct;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 class ConnectionWrapper implements Connection {
+	private static final AtomicReferenceFieldUpdater<ConnectionWrapper, ConnectionHandle> HANDLE =
+			AtomicReferenceFieldUpdater.newUpdater(ConnectionWrapper.class, ConnectionHandle.class, "handle");
+
 	final Connection delegate;
 	final BasicDataSourceImpl dataSource;
-	long lastAccessTime;
+	final long createTime;
+	long expireTime;
+	volatile long lastAccessTime;
+	volatile long lastKeepaliveTime;
+	volatile int state;
+	// Handle of the current borrow, null while the connection is not lent out; the leak detector
+	// reads it once and only ever compares it by identity
+	volatile ConnectionHandle handle;
 	boolean invalidate;
+	private final PreparedStatementCache statementCache;
+
+	// Session state as last set on the delegate, and the values it had when it was opened
+	private boolean autoCommit;
+	private int transactionIsolation;
+	private boolean readOnly;
+	private String catalog;
+	private boolean defaultAutoCommit;
+	private int defaultTransactionIsolation;
+	private boolean defaultReadOnly;
+	private String defaultCatalog;
+	private boolean catalogDirty;
+	private boolean transactionTouched;
 
 	ConnectionWrapper(Connection delegate, BasicDataSourceImpl dataSource, long accessTime) {
+		this(delegate, dataSource, accessTime, 0);
+	}
+
+	ConnectionWrapper(Connection delegate, BasicDataSourceImpl dataSource, long accessTime, int statementCacheSize) {
 		this.delegate = delegate;
 		this.dataSource = dataSource;
+		this.createTime = accessTime;
 		this.lastAccessTime = accessTime;
+		this.statementCache = statementCacheSize > 0 ? new PreparedStatementCache(statementCacheSize) : null;
+	}
+
+	/**
+	 * Reads the initial session state once, so that later getters and no-op setters need no round trip.
+	 */
+	void initState() throws SQLException {
+		defaultAutoCommit = autoCommit = delegate.getAutoCommit();
+		defaultTransactionIsolation = transactionIsolation = delegate.getTransactionIsolation();
+		defaultReadOnly = readOnly = delegate.isReadOnly();
+		defaultCatalog = catalog = delegate.getCatalog();
+	}
+
+	/**
+	 * Rolls back an unfinished transaction and restores whatever session state the borrower changed.
+	 */
+	void resetState() throws SQLException {
+		try {
+			if (transactionTouched && !autoCommit) {
+				delegate.rollback();
+			}
+			transactionTouched = false;
+			if (autoCommit != defaultAutoCommit) {
+				delegate.setAutoCommit(defaultAutoCommit);
+				autoCommit = defaultAutoCommit;
+			}
+			if (transactionIsolation != defaultTransactionIsolation) {
+				delegate.setTransactionIsolation(defaultTransactionIsolation);
+				transactionIsolation = defaultTransactionIsolation;
+			}
+			if (readOnly != defaultReadOnly) {
+				delegate.setReadOnly(defaultReadOnly);
+				readOnly = defaultReadOnly;
+			}
+			if (catalogDirty) {
+				if (defaultCatalog != null) {
+					delegate.setCatalog(defaultCatalog);
+				}
+				catalog = defaultCatalog;
+				catalogDirty = false;
+			}
+		} catch (Throwable e) {
+			throw handleException(e);
+		}
+	}
+
+	/**
+	 * Called before each statement execution, and whenever the borrower gets hold of something that
+	 * can reach the physical connection without going through a {@link StatementWrapper}.
+	 */
+	void touch() {
+		if (!autoCommit) {
+			transactionTouched = true;
+		}
+	}
+
+	/**
+	 * Lends the connection out under a new handle. Handles of earlier borrows stay closed.
+	 */
+	ConnectionHandle checkOut(long borrowNanos, Thread borrower, Throwable borrowSite, Lane lane) {
+		ConnectionHandle borrowed = new ConnectionHandle(this, borrowNanos, borrower, borrowSite, lane);
+		handle = borrowed;
+		return borrowed;
+	}
+
+	/**
+	 * Ends the borrow of the given handle.
+	 *
+	 * @return false if that borrow already ended, so the caller must not release the connection
+	 */
+	boolean checkIn(ConnectionHandle borrowed) {
+		return HANDLE.compareAndSet(this, borrowed, null);
+	}
+
+	/**
+	 * Closes the physical connection of a connection taken away from a borrower that still holds
+	 * its handle. The statement cache belongs to the borrower's thread and is not touched; the
+	 * driver closes the statements along with the connection.
+	 */
+	void abandon() {
+		try {
+			delegate.close();
+		} catch (SQLException e) {
+			// Ignore
+		}
 	}
 
 	void closeUnderlyingConnection() {
+		if (statementCache != null) {
+			statementCache.clear();
+		}
 		try {
 			delegate.close();
 		} catch (SQLException e) {
@@ -50,8 +168,14 @@ class ConnectionWrapper implements Connection {
 
 	public void setAutoCommit(boolean autoCommit) throws SQLException {
 		checkValid();
+		if (autoCommit == this.autoCommit) {
+			return;
+		}
 		try {
 			delegate.setAutoCommit(autoCommit);
+			this.autoCommit = autoCommit;
+			// switching back to auto-commit commits the open transaction
+			transactionTouched = false;
 		} catch (Throwable e) {
 			throw handleException(e);
 		}
@@ -59,17 +183,14 @@ class ConnectionWrapper implements Connection {
 
 	public boolean getAutoCommit() throws SQLException {
 		checkValid();
-		try {
-			return delegate.getAutoCommit();
-		} catch (Throwable e) {
-			throw handleException(e);
-		}
+		return autoCommit;
 	}
 
 	public void commit() throws SQLException {
 		checkValid();
 		try {
 			delegate.commit();
+			transactionTouched = false;
 		} catch (Throwable e) {
 			throw handleException(e);
 		}
@@ -77,28 +198,34 @@ class ConnectionWrapper implements Connection {
 
 	public void rollback() throws SQLException {
 		checkValid();
+		// nothing ran in this transaction, see touch()
+		if (!autoCommit && !transactionTouched) {
+			return;
+		}
 		try {
 			delegate.rollback();
+			transactionTouched = false;
 		} catch (Throwable e) {
 			throw handleException(e);
 		}
 	}
 
 	public void close() throws SQLException {
-		dataSource.releaseConnection(this);
+		ConnectionHandle borrowed = handle;
+		if (borrowed != null) {
+			borrowed.close();
+		}
 	}
 
 	public boolean isClosed() throws SQLException {
 		checkValid();
-		try {
-			return delegate.isClosed();
-		} catch (Throwable e) {
-			throw handleException(e);
-		}
+		return handle == null;
 	}
 
 	public DatabaseMetaData getMetaData() throws SQLException {
 		checkValid();
+		// its queries run on the physical connection
+		touch();
 		try {
 			return delegate.getMetaData();
 		} catch (Throwable e) {
@@ -108,8 +235,12 @@ class ConnectionWrapper implements Connection {
 
 	public void setReadOnly(boolean readOnly) throws SQLException {
 		checkValid();
+		if (readOnly == this.readOnly) {
+			return;
+		}
 		try {
 			delegate.setReadOnly(readOnly);
+			this.readOnly = readOnly;
 		} catch (Throwable e) {
 			throw handleException(e);
 		}
@@ -117,17 +248,18 @@ class ConnectionWrapper implements Connection {
 
 	public boolean isReadOnly() throws SQLException {
 		checkValid();
-		try {
-			return delegate.isReadOnly();
-		} catch (Throwable e) {
-			throw handleException(e);
-		}
+		return readOnly;
 	}
 
 	public void setCatalog(String catalog) throws SQLException {
 		checkValid();
+		if (catalog == null ? this.catalog == null : catalog.equals(this.catalog)) {
+			return;
+		}
 		try {
 			delegate.setCatalog(catalog);
+			this.catalog = catalog;
+			catalogDirty = true;
 		} catch (Throwable e) {
 			throw handleException(e);
 		}
@@ -135,17 +267,17 @@ class ConnectionWrapper implements Connection {
 
 	public String getCatalog() throws SQLException {
 		checkValid();
-		try {
-			return delegate.getCatalog();
-		} catch (Throwable e) {
-			throw handleException(e);
-		}
+		return catalog;
 	}
 
 	public void setTransactionIsolation(int level) throws SQLException {
 		checkValid();
+		if (level == transactionIsolation) {
+			return;
+		}
 		try {
 			delegate.setTransactionIsolation(level);
+			transactionIsolation = level;
 		} catch (Throwable e) {
 			throw handleException(e);
 		}
@@ -153,11 +285,7 @@ class ConnectionWrapper implements Connection {
 
 	public int getTransactionIsolation() throws SQLException {
 		checkValid();
-		try {
-			return delegate.getTransactionIsolation();
-		} catch (Throwable e) {
-			throw handleException(e);
-		}
+		return transactionIsolation;
 	}
 
 	public SQLWarning getWarnings() throws SQLException {
@@ -216,6 +344,7 @@ class ConnectionWrapper implements Connection {
 
 	public Savepoint setSavepoint() throws SQLException {
 		checkValid();
+		touch();
 		try {
 			return delegate.setSavepoint();
 		} catch (Throwable e) {
@@ -225,6 +354,7 @@ class ConnectionWrapper implements Connection {
 
 	public Savepoint setSavepoint(String name) throws SQLException {
 		checkValid();
+		touch();
 		try {
 			return delegate.setSavepoint(name);
 		} catch (Throwable e) {
@@ -368,6 +498,8 @@ class ConnectionWrapper implements Connection {
 	}
 
 	public <T> T unwrap(Class<T> iface) throws SQLException {
+		// the borrower may run anything on the unwrapped connection
+		touch();
 		try {
 			return delegate.unwrap(iface);
 		} catch (Throwable e) {
@@ -386,15 +518,24 @@ class ConnectionWrapper implements Connection {
 	SQLException handleException(Throwable e) {
 		if (e instanceof SQLException) {
 			SQLException se = (SQLException) e;
-			invalidate |= isFatalException(se);
+			if (isFatalException(se)) {
+				markInvalid();
+			}
 			return se;
 		}
-		invalidate = true;
+		markInvalid();
 		return new SQLException(e);
 	}
 
+	private void markInvalid() {
+		if (!invalidate) {
+			invalidate = true;
+			dataSource.metrics.invalidations.incrementAndGet();
+		}
+	}
+
 	private SQLClientInfoException handleClientInfoException(Throwable e) {
-		invalidate = true;
+		markInvalid();
 		if (e instanceof SQLClientInfoException) {
 			return (SQLClientInfoException) e;
 		}
@@ -414,6 +555,11 @@ class ConnectionWrapper implements Connection {
 		} else if (e.getMessage() != null && e.getMessage().contains("Violation of PRIMARY KEY constraint")) {
 			return false;
 		}
+		// a statement cancelled or timed out leaves the connection usable
+		if (e instanceof SQLTimeoutException || "57014".equals(e.getSQLState()) || "HY008".equals(e.getSQLState())
+				|| "70100".equals(e.getSQLState())) {
+			return false;
+		}
 		return true;
 	}
 
@@ -431,6 +577,9 @@ class ConnectionWrapper implements Connection {
 	public PreparedStatement prepareStatement(String sql) throws SQLException {
 		checkValid();
 		try {
+			if (statementCache != null) {
+				return prepareCached(new PreparedStatementCache.Key(sql, -1, null));
+			}
 			return new StatementWrapper(delegate.prepareStatement(sql), this);
 		} catch (Throwable e) {
 			throw handleException(e);
@@ -518,6 +667,9 @@ class ConnectionWrapper implements Connection {
 	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
 		checkValid();
 		try {
+			if (statementCache != null) {
+				return prepareCached(new PreparedStatementCache.Key(sql, autoGeneratedKeys, null));
+			}
 			return new StatementWrapper(delegate.prepareStatement(sql, autoGeneratedKeys), this);
 		} catch (Throwable e) {
 			throw handleException(e);
@@ -538,9 +690,49 @@ class ConnectionWrapper implements Connection {
 	public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
 		checkValid();
 		try {
+			if (statementCache != null) {
+				return prepareCached(new PreparedStatementCache.Key(sql, -1, columnNames.clone()));
+			}
 			return new StatementWrapper(delegate.prepareStatement(sql, columnNames), this);
 		} catch (Throwable e) {
 			throw handleException(e);
 		}
 	}
+
+	private PreparedStatement prepareCached(PreparedStatementCache.Key key) throws SQLException {
+		PreparedStatement statement = statementCache.take(key);
+		if (statement != null) {
+			dataSource.metrics.statementCacheHits.incrementAndGet();
+		} else {
+			dataSource.metrics.statementCacheMisses.incrementAndGet();
+			if (key.columnNames != null) {
+				statement = delegate.prepareStatement(key.sql, key.columnNames);
+			} else if (key.autoGeneratedKeys >= 0) {
+				statement = delegate.prepareStatement(key.sql, key.autoGeneratedKeys);
+			} else {
+				statement = delegate.prepareStatement(key.sql);
+			}
+		}
+		return new StatementWrapper(statement, this, key);
+	}
+
+	/**
+	 * Puts a logically closed statement back into the cache. A statement closed after its borrow
+	 * ended is not cached: the cache now belongs to the thread of the next borrower.
+	 *
+	 * @return false if the statement was not cached and must be closed by the caller
+	 */
+	boolean returnStatement(ConnectionHandle borrowed, PreparedStatementCache.Key key, PreparedStatement statement) {
+		if (invalidate || statementCache == null || handle != borrowed) {
+			return false;
+		}
+		try {
+			statement.clearParameters();
+			statement.clearBatch();
+			statement.clearWarnings();
+		} catch (Throwable e) {
+			return false;
+		}
+		return statementCache.offer(key, statement);
+	}
 }
\ No newline at end of file
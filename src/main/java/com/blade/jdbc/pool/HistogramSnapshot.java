@@ -0,0 +1,87 @@
+package com.blade.jdbc.pool;
+
+/**
+ * Immutable view of a latency histogram. All values are in microseconds; percentiles are the
+ * upper bound of the power-of-two bucket they fall in.
+ */
+public class HistogramSnapshot {
+
+	private final long count;
+	private final long sum;
+	private final long max;
+	private final long[] buckets;
+
+	HistogramSnapshot(long count, long sum, long max, long[] buckets) {
+		this.count = count;
+		this.sum = sum;
+		this.max = max;
+		this.buckets = buckets;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMeanMicros() {
+		return count == 0 ? 0 : sum / count;
+	}
+
+	/**
+	 * Largest value ever recorded; for a windowed snapshot this is still the all-time maximum.
+	 */
+	public long getMaxMicros() {
+		return max;
+	}
+
+	public long getP50Micros() {
+		return percentile(0.5);
+	}
+
+	public long getP99Micros() {
+		return percentile(0.99);
+	}
+
+	public long getP999Micros() {
+		return percentile(0.999);
+	}
+
+	/**
+	 * Counts per bucket, bucket i holding values below 2<sup>i</sup> microseconds.
+	 */
+	public long[] getBuckets() {
+		return buckets.clone();
+	}
+
+	public long percentile(double quantile) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(quantile * count);
+		long seen = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			seen += buckets[i];
+			if (seen >= rank) {
+				return Math.min(1L << i, max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Values recorded since an earlier snapshot of the same histogram.
+	 */
+	public HistogramSnapshot minus(HistogramSnapshot earlier) {
+		long[] delta = new long[buckets.length];
+		for (int i = 0; i < buckets.length; i++) {
+			delta[i] = buckets[i] - earlier.buckets[i];
+		}
+		return new HistogramSnapshot(count - earlier.count, sum - earlier.sum, max, delta);
+	}
+
+	@Override
+	public String toString() {
+		return "HistogramSnapshot{count=" + count + ", mean=" + getMeanMicros() + "us, p50=" + getP50Micros()
+				+ "us, p99=" + getP99Micros() + "us, max=" + max + "us}";
+	}
+
+}
@@ -0,0 +1,43 @@
+package com.blade.jdbc.pool;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * A named quota inside one pool. Its borrowers share the pool's connections but never hold more
+ * than maxConnections of them at once, so bulk work in one lane cannot starve the other traffic.
+ */
+class Lane {
+
+    final String name;
+    final int maxConnections;
+    final long borrowTimeout;
+    final Semaphore permits;
+
+    Lane(String name, int maxConnections, long borrowTimeout) {
+        this.name = name;
+        this.maxConnections = maxConnections;
+        this.borrowTimeout = borrowTimeout;
+        // fair, so that lane borrowers are served in arrival order like the pool's own waiters
+        this.permits = new Semaphore(maxConnections, true);
+    }
+
+    int getInUse() {
+        return maxConnections - permits.availablePermits();
+    }
+
+    /**
+     * Gives back the permit of the lane a borrow went through. Called once per borrow, by whoever
+     * ended it with {@link ConnectionWrapper#checkIn}.
+     */
+    static void release(ConnectionHandle borrowed) {
+        if (borrowed.lane != null) {
+            borrowed.lane.permits.release();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Lane{" + name + ", " + getInUse() + '/' + maxConnections + '}';
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.blade.jdbc.pool;
+
+/**
+ * Thread-scoped choice of the pool lane, for code that borrows connections without knowing it,
+ * such as a {@link com.blade.jdbc.Model} inside a batch job.
+ *
+ * <pre>
+ * LaneContext.set("batch");
+ * try {
+ *     ...
+ * } finally {
+ *     LaneContext.clear();
+ * }
+ * </pre>
+ *
+ * A DataSource returned by {@link BasicDataSourceImpl#lane(String)} takes precedence over it.
+ */
+public final class LaneContext {
+
+	private static final ThreadLocal<String> CURRENT = new ThreadLocal<String>();
+
+	private LaneContext() {
+	}
+
+	public static void set(String lane) {
+		CURRENT.set(lane);
+	}
+
+	public static String get() {
+		return CURRENT.get();
+	}
+
+	public static void clear() {
+		CURRENT.remove();
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.blade.jdbc.pool;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+import javax.sql.DataSource;
+
+/**
+ * View of a pool that borrows every connection through one lane, to be handed to
+ * {@link com.blade.jdbc.Base#open(String, DataSource)}.
+ */
+class LaneDataSource implements DataSource {
+
+    private final BasicDataSourceImpl pool;
+    private final String lane;
+
+    LaneDataSource(BasicDataSourceImpl pool, String lane) {
+        this.pool = pool;
+        this.lane = lane;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return pool.getLaneConnection(lane);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection();
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return pool.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        pool.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        pool.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return pool.getLoginTimeout();
+    }
+
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        throw new SQLException("Impossible to unwrap");
+    }
+
+    public boolean isWrapperFor(Class<?> iface) {
+        return false;
+    }
+
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return pool + "/" + lane;
+    }
+
+}
@@ -0,0 +1,360 @@
+package com.blade.jdbc.pool;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sizing and timeout settings of a {@link BasicDataSourceImpl}. All times are in milliseconds.
+ */
+public class PoolConfig {
+
+	private int minIdle = 1;
+	private int maxSize = 10;
+	private long maxLifetime = 1800 * 1000L;
+	private long idleTimeout = 1800 * 1000L;
+	private int maxWaitingThreads = -1;
+	private long borrowTimeout = 3 * 1000L;
+	private int lockTimeout = -1;
+	private long keepaliveTime = 120 * 1000L;
+	private long validationTimeout = 5 * 1000L;
+	private long housekeepingPeriod = 30 * 1000L;
+	private boolean adaptiveSizing;
+	private long adaptivePeriod = 1000L;
+	private int breakerFailureThreshold = 5;
+	private long breakerCooldown = 5 * 1000L;
+	private int statementCacheSize = 32;
+	private boolean registerMbeans;
+	private final Map<String, LaneConfig> lanes = new LinkedHashMap<String, LaneConfig>();
+	private boolean virtualThreads;
+	private long leakDetectionThreshold;
+	private int leakTraceSampleRate = 10;
+	private boolean reclaimLeakedConnections;
+
+	public int getMinIdle() {
+		return minIdle;
+	}
+
+	/**
+	 * Number of idle connections the pool keeps open, capped by maxSize. Opened in the background, or
+	 * at once by {@link BasicDataSourceImpl#prefill()}, so keep it small when many pools share a database.
+	 */
+	public PoolConfig setMinIdle(int minIdle) {
+		if (minIdle < 0) {
+			throw new IllegalArgumentException("minIdle should be a nonnegative value");
+		}
+		this.minIdle = minIdle;
+		return this;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public PoolConfig setMaxSize(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("maxSize should be a positive value");
+		}
+		this.maxSize = maxSize;
+		return this;
+	}
+
+	public long getMaxLifetime() {
+		return maxLifetime;
+	}
+
+	/**
+	 * Age after which a connection is retired, 0 keeps connections forever. Each connection
+	 * subtracts a random variance of up to 2.5% so that they do not all reconnect at once.
+	 */
+	public PoolConfig setMaxLifetime(long maxLifetime) {
+		if (maxLifetime < 0) {
+			throw new IllegalArgumentException("maxLifetime should be a nonnegative value");
+		}
+		this.maxLifetime = maxLifetime;
+		return this;
+	}
+
+	/**
+	 * Time after which connections beyond minIdle are closed when nobody borrowed them.
+	 */
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	public PoolConfig setIdleTimeout(long idleTimeout) {
+		if (idleTimeout < 1) {
+			throw new IllegalArgumentException("idleTimeout should be a positive value");
+		}
+		this.idleTimeout = idleTimeout;
+		return this;
+	}
+
+	public long getBorrowTimeout() {
+		return borrowTimeout;
+	}
+
+	/**
+	 * How long a borrower waits for a connection when none is idle. It must be positive, since a
+	 * borrower that may not wait would fail whenever all connections are in use.
+	 */
+	public PoolConfig setBorrowTimeout(long borrowTimeout) {
+		if (borrowTimeout < 1) {
+			throw new IllegalArgumentException("borrowTimeout should be a positive value");
+		}
+		this.borrowTimeout = borrowTimeout;
+		return this;
+	}
+
+	public int getMaxWaitingThreads() {
+		return maxWaitingThreads;
+	}
+
+	/**
+	 * How many threads may queue for a connection when the pool is exhausted, -1 for no limit.
+	 * Borrowers beyond that fail at once instead of waiting for borrowTimeout.
+	 */
+	public PoolConfig setMaxWaitingThreads(int maxWaitingThreads) {
+		if (maxWaitingThreads < -1) {
+			throw new IllegalArgumentException("maxWaitingThreads should be -1 or a non-negative value");
+		}
+		this.maxWaitingThreads = maxWaitingThreads;
+		return this;
+	}
+
+	public int getLockTimeout() {
+		return lockTimeout;
+	}
+
+	/**
+	 * Value for <code>SET LOCK_TIMEOUT</code> on new connections, negative to leave it unset.
+	 */
+	public PoolConfig setLockTimeout(int lockTimeout) {
+		this.lockTimeout = lockTimeout;
+		return this;
+	}
+
+	public long getKeepaliveTime() {
+		return keepaliveTime;
+	}
+
+	/**
+	 * Idle time after which a connection is checked with {@link java.sql.Connection#isValid(int)},
+	 * 0 disables the check.
+	 */
+	public PoolConfig setKeepaliveTime(long keepaliveTime) {
+		if (keepaliveTime < 0) {
+			throw new IllegalArgumentException("keepaliveTime should be a nonnegative value");
+		}
+		this.keepaliveTime = keepaliveTime;
+		return this;
+	}
+
+	public long getValidationTimeout() {
+		return validationTimeout;
+	}
+
+	public PoolConfig setValidationTimeout(long validationTimeout) {
+		if (validationTimeout < 1000) {
+			throw new IllegalArgumentException("validationTimeout should be at least 1000 ms");
+		}
+		this.validationTimeout = validationTimeout;
+		return this;
+	}
+
+	public long getHousekeepingPeriod() {
+		return housekeepingPeriod;
+	}
+
+	/**
+	 * Delay between two runs of the thread that evicts, retires and validates idle connections.
+	 */
+	public PoolConfig setHousekeepingPeriod(long housekeepingPeriod) {
+		if (housekeepingPeriod < 1) {
+			throw new IllegalArgumentException("housekeepingPeriod should be a positive value");
+		}
+		this.housekeepingPeriod = housekeepingPeriod;
+		return this;
+	}
+
+	public int getStatementCacheSize() {
+		return statementCacheSize;
+	}
+
+	/**
+	 * Number of prepared statements kept open per connection, 0 disables the cache.
+	 */
+	public PoolConfig setStatementCacheSize(int statementCacheSize) {
+		if (statementCacheSize < 0) {
+			throw new IllegalArgumentException("statementCacheSize should be a nonnegative value");
+		}
+		this.statementCacheSize = statementCacheSize;
+		return this;
+	}
+
+	public long getLeakDetectionThreshold() {
+		return leakDetectionThreshold;
+	}
+
+	/**
+	 * Time a connection may be held before it is reported as a possible leak, 0 disables leak detection.
+	 */
+	public PoolConfig setLeakDetectionThreshold(long leakDetectionThreshold) {
+		if (leakDetectionThreshold < 0) {
+			throw new IllegalArgumentException("leakDetectionThreshold should be 0 or a positive value");
+		}
+		this.leakDetectionThreshold = leakDetectionThreshold;
+		return this;
+	}
+
+	public int getLeakTraceSampleRate() {
+		return leakTraceSampleRate;
+	}
+
+	/**
+	 * Captures the stack trace of one borrow out of leakTraceSampleRate, 1 captures every borrow.
+	 * Leaks from unsampled borrows are still reported, without the borrow site.
+	 */
+	public PoolConfig setLeakTraceSampleRate(int leakTraceSampleRate) {
+		if (leakTraceSampleRate < 1) {
+			throw new IllegalArgumentException("leakTraceSampleRate should be a positive value");
+		}
+		this.leakTraceSampleRate = leakTraceSampleRate;
+		return this;
+	}
+
+	public boolean isReclaimLeakedConnections() {
+		return reclaimLeakedConnections;
+	}
+
+	/**
+	 * Takes leaked connections back from their borrower and closes them, instead of only reporting them.
+	 */
+	public PoolConfig setReclaimLeakedConnections(boolean reclaimLeakedConnections) {
+		this.reclaimLeakedConnections = reclaimLeakedConnections;
+		return this;
+	}
+
+	public boolean isAdaptiveSizing() {
+		return adaptiveSizing;
+	}
+
+	/**
+	 * Lets the pool move its connection limit between minIdle (at least 1) and maxSize, following
+	 * borrow waits and the time connections are held. The limit starts at the lower bound.
+	 */
+	public PoolConfig setAdaptiveSizing(boolean adaptiveSizing) {
+		this.adaptiveSizing = adaptiveSizing;
+		return this;
+	}
+
+	public long getAdaptivePeriod() {
+		return adaptivePeriod;
+	}
+
+	/**
+	 * Delay between two adjustments of the adaptive connection limit.
+	 */
+	public PoolConfig setAdaptivePeriod(long adaptivePeriod) {
+		if (adaptivePeriod < 1) {
+			throw new IllegalArgumentException("adaptivePeriod should be a positive value");
+		}
+		this.adaptivePeriod = adaptivePeriod;
+		return this;
+	}
+
+	public int getBreakerFailureThreshold() {
+		return breakerFailureThreshold;
+	}
+
+	/**
+	 * Consecutive failures to open a connection after which borrowers fail fast instead of waiting
+	 * for one, 0 disables the circuit breaker.
+	 */
+	public PoolConfig setBreakerFailureThreshold(int breakerFailureThreshold) {
+		if (breakerFailureThreshold < 0) {
+			throw new IllegalArgumentException("breakerFailureThreshold should be 0 or a positive value");
+		}
+		this.breakerFailureThreshold = breakerFailureThreshold;
+		return this;
+	}
+
+	public long getBreakerCooldown() {
+		return breakerCooldown;
+	}
+
+	/**
+	 * Time an open circuit breaker waits before a single connection attempt probes the database again.
+	 */
+	public PoolConfig setBreakerCooldown(long breakerCooldown) {
+		if (breakerCooldown < 1) {
+			throw new IllegalArgumentException("breakerCooldown should be a positive value");
+		}
+		this.breakerCooldown = breakerCooldown;
+		return this;
+	}
+
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * Tunes the pool for borrowers running on virtual threads: the per-thread list of recently
+	 * returned connections is skipped, since a virtual thread rarely borrows twice and would only
+	 * leave a thread-local behind.
+	 */
+	public PoolConfig setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+		return this;
+	}
+
+	/**
+	 * Adds a named lane that may hold at most maxConnections of the pool's connections at once.
+	 * Borrowers choose it through {@link BasicDataSourceImpl#lane(String)} or {@link LaneContext};
+	 * everyone else borrows without a quota. A lane reserves nothing, idle connections are shared.
+	 *
+	 * @param borrowTimeout how long a borrower of the lane waits, for both its quota and a connection
+	 */
+	public PoolConfig addLane(String name, int maxConnections, long borrowTimeout) {
+		if (name == null || name.isEmpty()) {
+			throw new IllegalArgumentException("lane name should not be empty");
+		}
+		if (maxConnections < 1) {
+			throw new IllegalArgumentException("lane maxConnections should be a positive value");
+		}
+		if (borrowTimeout < 1) {
+			throw new IllegalArgumentException("lane borrowTimeout should be a positive value");
+		}
+		lanes.put(name, new LaneConfig(name, maxConnections, borrowTimeout));
+		return this;
+	}
+
+	Collection<LaneConfig> getLanes() {
+		return lanes.values();
+	}
+
+	public boolean isRegisterMbeans() {
+		return registerMbeans;
+	}
+
+	/**
+	 * Registers the pool's {@link BasicDataSourceMXBean} with the platform MBean server.
+	 */
+	public PoolConfig setRegisterMbeans(boolean registerMbeans) {
+		this.registerMbeans = registerMbeans;
+		return this;
+	}
+
+	static final class LaneConfig {
+		final String name;
+		final int maxConnections;
+		final long borrowTimeout;
+
+		LaneConfig(String name, int maxConnections, long borrowTimeout) {
+			this.name = name;
+			this.maxConnections = maxConnections;
+			this.borrowTimeout = borrowTimeout;
+		}
+	}
+
+}
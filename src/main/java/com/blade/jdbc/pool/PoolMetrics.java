@@ -0,0 +1,50 @@
+package com.blade.jdbc.pool;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recording side of the pool telemetry. Every method is allocation-free.
+ */
+class PoolMetrics {
+
+    final LatencyHistogram borrowWait = new LatencyHistogram();
+    final LatencyHistogram holdTime = new LatencyHistogram();
+    final LatencyHistogram creation = new LatencyHistogram();
+
+    final AtomicLong connectionsCreated = new AtomicLong();
+    final AtomicLong createFailures = new AtomicLong();
+    final AtomicLong timeouts = new AtomicLong();
+    final AtomicLong rejections = new AtomicLong();
+    final AtomicLong invalidations = new AtomicLong();
+    final AtomicLong leaks = new AtomicLong();
+    final AtomicLong statementCacheHits = new AtomicLong();
+    final AtomicLong statementCacheMisses = new AtomicLong();
+
+    private final AtomicInteger peakWaiting = new AtomicInteger();
+    private final AtomicInteger windowPeakWaiting = new AtomicInteger();
+
+    void recordWaiting(int waiting) {
+        raise(peakWaiting, waiting);
+        raise(windowPeakWaiting, waiting);
+    }
+
+    int getPeakWaiting() {
+        return peakWaiting.get();
+    }
+
+    /**
+     * Returns the peak number of waiting threads since the previous call.
+     */
+    int resetWindowPeakWaiting() {
+        return windowPeakWaiting.getAndSet(0);
+    }
+
+    private static void raise(AtomicInteger peak, int value) {
+        int current;
+        while (value > (current = peak.get()) && !peak.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+}
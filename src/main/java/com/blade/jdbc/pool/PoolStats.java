@@ -0,0 +1,213 @@
+package com.blade.jdbc.pool;
+
+/**
+ * Point-in-time telemetry of a {@link BasicDataSourceImpl}.
+ * <p>
+ * Counters and histograms are either cumulative since the pool started or, for
+ * {@link BasicDataSource#getRecentStats()}, limited to the last housekeeping window. Connection
+ * counts are always current values.
+ */
+public class PoolStats {
+
+	private final long timestamp;
+	private final long windowMillis;
+	private final int limit;
+	private final int activeConnections;
+	private final int idleConnections;
+	private final int waitingThreads;
+	private final int peakWaitingThreads;
+	private final long connectionsCreated;
+	private final long createFailures;
+	private final long timeouts;
+	private final long rejections;
+	private final long invalidations;
+	private final long leaks;
+	private final String circuitState;
+	private final long circuitTrips;
+	private final long limitIncreases;
+	private final long limitDecreases;
+	private final long statementCacheHits;
+	private final long statementCacheMisses;
+	private final HistogramSnapshot borrowWait;
+	private final HistogramSnapshot holdTime;
+	private final HistogramSnapshot creation;
+
+	PoolStats(long timestamp, long windowMillis, int limit, int activeConnections, int idleConnections, int waitingThreads,
+			int peakWaitingThreads, long connectionsCreated, long createFailures, long timeouts, long rejections, long invalidations,
+			long leaks, String circuitState, long circuitTrips, long limitIncreases,
+			long limitDecreases, long statementCacheHits, long statementCacheMisses, HistogramSnapshot borrowWait,
+			HistogramSnapshot holdTime, HistogramSnapshot creation) {
+		this.timestamp = timestamp;
+		this.windowMillis = windowMillis;
+		this.limit = limit;
+		this.activeConnections = activeConnections;
+		this.idleConnections = idleConnections;
+		this.waitingThreads = waitingThreads;
+		this.peakWaitingThreads = peakWaitingThreads;
+		this.connectionsCreated = connectionsCreated;
+		this.createFailures = createFailures;
+		this.timeouts = timeouts;
+		this.rejections = rejections;
+		this.invalidations = invalidations;
+		this.leaks = leaks;
+		this.circuitState = circuitState;
+		this.circuitTrips = circuitTrips;
+		this.limitIncreases = limitIncreases;
+		this.limitDecreases = limitDecreases;
+		this.statementCacheHits = statementCacheHits;
+		this.statementCacheMisses = statementCacheMisses;
+		this.borrowWait = borrowWait;
+		this.holdTime = holdTime;
+		this.creation = creation;
+	}
+
+	/**
+	 * Counters and histograms of this snapshot minus those of an earlier one, peak waiting
+	 * threads excepted.
+	 */
+	PoolStats minus(PoolStats earlier, int windowPeakWaitingThreads) {
+		return new PoolStats(timestamp, timestamp - earlier.timestamp, limit, activeConnections, idleConnections,
+				waitingThreads, windowPeakWaitingThreads, connectionsCreated - earlier.connectionsCreated,
+				createFailures - earlier.createFailures, timeouts - earlier.timeouts, rejections - earlier.rejections,
+				invalidations - earlier.invalidations, leaks - earlier.leaks, circuitState,
+				circuitTrips - earlier.circuitTrips, limitIncreases - earlier.limitIncreases,
+				limitDecreases - earlier.limitDecreases, statementCacheHits - earlier.statementCacheHits,
+				statementCacheMisses - earlier.statementCacheMisses,
+				borrowWait.minus(earlier.borrowWait), holdTime.minus(earlier.holdTime), creation.minus(earlier.creation));
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Length of the window the counters cover, or 0 for cumulative stats.
+	 */
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+
+	/**
+	 * Number of connections the pool may open, maxSize unless adaptive sizing moves it.
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	public int getActiveConnections() {
+		return activeConnections;
+	}
+
+	public int getIdleConnections() {
+		return idleConnections;
+	}
+
+	public int getWaitingThreads() {
+		return waitingThreads;
+	}
+
+	public int getPeakWaitingThreads() {
+		return peakWaitingThreads;
+	}
+
+	public long getConnectionsCreated() {
+		return connectionsCreated;
+	}
+
+	public long getCreateFailures() {
+		return createFailures;
+	}
+
+	public long getTimeouts() {
+		return timeouts;
+	}
+
+	/**
+	 * Borrows refused at once, because maxWaitingThreads threads were already waiting or because
+	 * the circuit breaker was open.
+	 */
+	public long getRejections() {
+		return rejections;
+	}
+
+	/**
+	 * Connections invalidated because the driver reported an error on them.
+	 */
+	public long getInvalidations() {
+		return invalidations;
+	}
+
+	/**
+	 * Connections held longer than the leak detection threshold.
+	 */
+	public long getLeaks() {
+		return leaks;
+	}
+
+	/**
+	 * CLOSED, OPEN while borrowers fail fast after repeated connection failures, or HALF_OPEN while
+	 * a probe tests whether the database is back.
+	 */
+	public String getCircuitState() {
+		return circuitState;
+	}
+
+	/**
+	 * Number of times the circuit breaker opened.
+	 */
+	public long getCircuitTrips() {
+		return circuitTrips;
+	}
+
+	/**
+	 * Times adaptive sizing raised the limit.
+	 */
+	public long getLimitIncreases() {
+		return limitIncreases;
+	}
+
+	/**
+	 * Times adaptive sizing lowered the limit.
+	 */
+	public long getLimitDecreases() {
+		return limitDecreases;
+	}
+
+	public long getStatementCacheHits() {
+		return statementCacheHits;
+	}
+
+	public long getStatementCacheMisses() {
+		return statementCacheMisses;
+	}
+
+	/**
+	 * Time spent inside getConnection(), including borrows that timed out.
+	 */
+	public HistogramSnapshot getBorrowWait() {
+		return borrowWait;
+	}
+
+	/**
+	 * Time between borrowing a connection and closing it.
+	 */
+	public HistogramSnapshot getHoldTime() {
+		return holdTime;
+	}
+
+	/**
+	 * Time to open a physical connection.
+	 */
+	public HistogramSnapshot getCreation() {
+		return creation;
+	}
+
+	@Override
+	public String toString() {
+		return "PoolStats{limit=" + limit + ", active=" + activeConnections + ", idle=" + idleConnections + ", waiting=" + waitingThreads
+				+ ", peakWaiting=" + peakWaitingThreads + ", created=" + connectionsCreated + ", createFailures="
+				+ createFailures + ", timeouts=" + timeouts + ", rejections=" + rejections + ", invalidations=" + invalidations + ", leaks=" + leaks + ", circuit=" + circuitState + ", circuitTrips=" + circuitTrips + ", borrowWait="
+				+ borrowWait + ", holdTime=" + holdTime + ", creation=" + creation + '}';
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.blade.jdbc.pool;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Bounded LRU of the prepared statements of one physical connection.
+ * <p>
+ * A statement is taken out of the cache while it is in use and put back when it is logically
+ * closed, so two open statements never share a delegate. Like the connection itself, the cache
+ * is only touched by the thread that currently owns the connection and is not synchronized.
+ */
+class PreparedStatementCache {
+
+    private final int maxSize;
+    private final LinkedHashMap<Key, PreparedStatement> statements;
+
+    PreparedStatementCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<Key, PreparedStatement>(Math.min(maxSize, 64) * 2);
+    }
+
+    PreparedStatement take(Key key) {
+        return statements.remove(key);
+    }
+
+    /**
+     * Caches a statement that is no longer in use.
+     *
+     * @return false if an equivalent statement is already cached and this one should be closed
+     */
+    boolean offer(Key key, PreparedStatement statement) {
+        if (statements.containsKey(key)) {
+            return false;
+        }
+        statements.put(key, statement);
+        if (statements.size() > maxSize) {
+            Iterator<PreparedStatement> eldest = statements.values().iterator();
+            closeQuietly(eldest.next());
+            eldest.remove();
+        }
+        return true;
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    void clear() {
+        for (PreparedStatement statement : statements.values()) {
+            closeQuietly(statement);
+        }
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // Ignore
+        }
+    }
+
+    /**
+     * SQL text plus the generated-keys variant it was prepared with.
+     */
+    static final class Key {
+        final String sql;
+        final int autoGeneratedKeys;
+        final String[] columnNames;
+        private final int hash;
+
+        Key(String sql, int autoGeneratedKeys, String[] columnNames) {
+            this.sql = sql;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+            this.columnNames = columnNames;
+            this.hash = 31 * (31 * sql.hashCode() + autoGeneratedKeys) + Arrays.hashCode(columnNames);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return hash == key.hash
+                    && autoGeneratedKeys == key.autoGeneratedKeys
+                    && sql.equals(key.sql)
+                    && Arrays.equals(columnNames, key.columnNames);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
@@ -28,12 +28,76 @@ import java.util.Map;
 
 class StatementWrapper implements CallableStatement {
     
+    // Settings of a cached statement changed by its user, restored before it is cached again
+    private static final int MAX_ROWS = 1;
+    private static final int FETCH_SIZE = 2;
+    private static final int QUERY_TIMEOUT = 4;
+    private static final int FETCH_DIRECTION = 8;
+    private static final int MAX_FIELD_SIZE = 16;
+    
 	final Statement delegate;
     final ConnectionWrapper connection;
+    final PreparedStatementCache.Key cacheKey;
+    // The borrow the statement was created in, only that borrow may put it back into the cache
+    private final ConnectionHandle handle;
+    private ResultSet resultSet;
+    private ResultSet generatedKeys;
+    private boolean closed;
+    private int changed;
+    private int savedMaxRows;
+    private int savedFetchSize;
+    private int savedQueryTimeout;
+    private int savedFetchDirection;
+    private int savedMaxFieldSize;
+    // Escape processing cannot be read back and poolable=false asks not to be pooled
+    private boolean uncacheable;
     
     StatementWrapper(Statement delegate, ConnectionWrapper connection) {
+        this(delegate, connection, null);
+    }
+    
+    StatementWrapper(Statement delegate, ConnectionWrapper connection, PreparedStatementCache.Key cacheKey) {
         this.delegate = delegate;
         this.connection = connection;
+        this.cacheKey = cacheKey;
+        this.handle = connection.handle;
+    }
+    
+    /**
+     * @return true the first time a setting of a cached statement changes, so its value is saved
+     */
+    private boolean saving(int setting) {
+        if (cacheKey == null || (changed & setting) != 0) {
+            return false;
+        }
+        changed |= setting;
+        return true;
+    }
+    
+    /**
+     * Puts the settings a user changed back to their values when the statement was taken from the
+     * cache or prepared.
+     *
+     * @return false if a setting could not be restored
+     */
+    private boolean restoreSettings() {
+        if (uncacheable) {
+            return false;
+        }
+        if (changed == 0) {
+            return true;
+        }
+        try {
+            if ((changed & MAX_ROWS) != 0) delegate.setMaxRows(savedMaxRows);
+            if ((changed & FETCH_SIZE) != 0) delegate.setFetchSize(savedFetchSize);
+            if ((changed & QUERY_TIMEOUT) != 0) delegate.setQueryTimeout(savedQueryTimeout);
+            if ((changed & FETCH_DIRECTION) != 0) delegate.setFetchDirection(savedFetchDirection);
+            if ((changed & MAX_FIELD_SIZE) != 0) delegate.setMaxFieldSize(savedMaxFieldSize);
+            changed = 0;
+            return true;
+        } catch (Throwable e) {
+            return false;
+        }
     }
     
     @Override
@@ -991,14 +1055,16 @@ class StatementWrapper implements CallableStatement {
     }
 
     public ResultSet executeQuery() throws SQLException {
+        connection.touch();
         try {
-            return ((PreparedStatement) delegate).executeQuery();
+            return resultSet = ((PreparedStatement) delegate).executeQuery();
         } catch (Throwable e) {
             throw handleException(e);
         }
     }
 
     public int executeUpdate() throws SQLException {
+        connection.touch();
         try {
             return ((PreparedStatement) delegate).executeUpdate();
         } catch (Throwable e) {
@@ -1170,6 +1236,7 @@ class StatementWrapper implements CallableStatement {
     }
 
     public boolean execute() throws SQLException {
+        connection.touch();
         try {
             return ((PreparedStatement) delegate).execute();
         } catch (Throwable e) {
@@ -1434,14 +1501,16 @@ class StatementWrapper implements CallableStatement {
     }
 
     public ResultSet executeQuery(String sql) throws SQLException {
+        connection.touch();
         try {
-            return delegate.executeQuery(sql);
+            return resultSet = delegate.executeQuery(sql);
         } catch (Throwable e) {
             throw handleException(e);
         }
     }
 
     public int executeUpdate(String sql) throws SQLException {
+        connection.touch();
         try {
             return delegate.executeUpdate(sql);
         } catch (Throwable e) {
@@ -1450,7 +1519,20 @@ class StatementWrapper implements CallableStatement {
     }
 
     public void close() throws SQLException {
-        try {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (cacheKey != null) {
+                // A cached statement stays open, so release its cursors explicitly
+                if (resultSet != null) resultSet.close();
+                if (generatedKeys != null) generatedKeys.close();
+                resultSet = generatedKeys = null;
+                if (restoreSettings() && connection.returnStatement(handle, cacheKey, (PreparedStatement) delegate)) {
+                    return;
+                }
+            }
             delegate.close();
         } catch (Throwable e) {
             throw handleException(e);
@@ -1467,6 +1549,7 @@ class StatementWrapper implements CallableStatement {
 
     public void setMaxFieldSize(int max) throws SQLException {
         try {
+            if (saving(MAX_FIELD_SIZE)) savedMaxFieldSize = delegate.getMaxFieldSize();
             delegate.setMaxFieldSize(max);
         } catch (Throwable e) {
             throw handleException(e);
@@ -1483,6 +1566,7 @@ class StatementWrapper implements CallableStatement {
 
     public void setMaxRows(int max) throws SQLException {
         try {
+            if (saving(MAX_ROWS)) savedMaxRows = delegate.getMaxRows();
             delegate.setMaxRows(max);
         } catch (Throwable e) {
             throw handleException(e);
@@ -1491,6 +1575,7 @@ class StatementWrapper implements CallableStatement {
 
     public void setEscapeProcessing(boolean enable) throws SQLException {
         try {
+            if (!enable) uncacheable = true;
             delegate.setEscapeProcessing(enable);
         } catch (Throwable e) {
             throw handleException(e);
@@ -1507,6 +1592,7 @@ class StatementWrapper implements CallableStatement {
 
     public void setQueryTimeout(int seconds) throws SQLException {
         try {
+            if (saving(QUERY_TIMEOUT)) savedQueryTimeout = delegate.getQueryTimeout();
             delegate.setQueryTimeout(seconds);
         } catch (Throwable e) {
             throw handleException(e);
@@ -1546,6 +1632,7 @@ class StatementWrapper implements CallableStatement {
     }
 
     public boolean execute(String sql) throws SQLException {
+        connection.touch();
         try {
             return delegate.execute(sql);
         } catch (Throwable e) {
@@ -1555,7 +1642,7 @@ class StatementWrapper implements CallableStatement {
 
     public ResultSet getResultSet() throws SQLException {
         try {
-            return delegate.getResultSet();
+            return resultSet = delegate.getResultSet();
         } catch (Throwable e) {
             throw handleException(e);
         }
@@ -1579,6 +1666,7 @@ class StatementWrapper implements CallableStatement {
 
     public void setFetchDirection(int direction) throws SQLException {
         try {
+            if (saving(FETCH_DIRECTION)) savedFetchDirection = delegate.getFetchDirection();
             delegate.setFetchDirection(direction);
         } catch (Throwable e) {
             throw handleException(e);
@@ -1595,6 +1683,7 @@ class StatementWrapper implements CallableStatement {
 
     public void setFetchSize(int rows) throws SQLException {
         try {
+            if (saving(FETCH_SIZE)) savedFetchSize = delegate.getFetchSize();
             delegate.setFetchSize(rows);
         } catch (Throwable e) {
             throw handleException(e);
@@ -1642,6 +1731,7 @@ class StatementWrapper implements CallableStatement {
     }
 
     public int[] executeBatch() throws SQLException {
+        connection.touch();
         try {
             return delegate.executeBatch();
         } catch (Throwable e) {
@@ -1650,6 +1740,8 @@ class StatementWrapper implements CallableStatement {
     }
 
     public Connection getConnection() throws SQLException {
+        // the physical connection, see ConnectionWrapper.touch()
+        connection.touch();
         try {
             return delegate.getConnection();
         } catch (Throwable e) {
@@ -1667,13 +1759,14 @@ class StatementWrapper implements CallableStatement {
 
     public ResultSet getGeneratedKeys() throws SQLException {
         try {
-            return delegate.getGeneratedKeys();
+            return generatedKeys = delegate.getGeneratedKeys();
         } catch (Throwable e) {
             throw handleException(e);
         }
     }
 
     public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        connection.touch();
         try {
             return delegate.executeUpdate(sql, autoGeneratedKeys);
         } catch (Throwable e) {
@@ -1682,6 +1775,7 @@ class StatementWrapper implements CallableStatement {
     }
 
     public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        connection.touch();
         try {
             return delegate.executeUpdate(sql, columnIndexes);
         } catch (Throwable e) {
@@ -1690,6 +1784,7 @@ class StatementWrapper implements CallableStatement {
     }
 
     public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+        connection.touch();
         try {
             return delegate.executeUpdate(sql, columnNames);
         } catch (Throwable e) {
@@ -1698,6 +1793,7 @@ class StatementWrapper implements CallableStatement {
     }
 
     public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+        connection.touch();
         try {
             return delegate.execute(sql, autoGeneratedKeys);
         } catch (Throwable e) {
@@ -1706,6 +1802,7 @@ class StatementWrapper implements CallableStatement {
     }
 
     public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+        connection.touch();
         try {
             return delegate.execute(sql, columnIndexes);
         } catch (Throwable e) {
@@ -1714,6 +1811,7 @@ class StatementWrapper implements CallableStatement {
     }
 
     public boolean execute(String sql, String[] columnNames) throws SQLException {
+        connection.touch();
         try {
             return delegate.execute(sql, columnNames);
         } catch (Throwable e) {
@@ -1731,7 +1829,7 @@ class StatementWrapper implements CallableStatement {
 
     public boolean isClosed() throws SQLException {
         try {
-            return delegate.isClosed();
+            return closed || delegate.isClosed();
         } catch (Throwable e) {
             throw handleException(e);
         }
@@ -1739,6 +1837,7 @@ class StatementWrapper implements CallableStatement {
 
     public void setPoolable(boolean poolable) throws SQLException {
         try {
+            if (!poolable) uncacheable = true;
             delegate.setPoolable(poolable);
         } catch (Throwable e) {
             throw handleException(e);
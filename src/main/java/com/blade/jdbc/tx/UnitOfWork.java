@@ -0,0 +1,109 @@
+package com.blade.jdbc.tx;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+import org.sql2o.Sql2oException;
+
+/**
+ * Binds one connection per database to the current thread, so that the {@link com.blade.jdbc.Model}
+ * and {@link com.blade.jdbc.Base} operations inside share it instead of borrowing a connection each.
+ * Statements closed on it go back to the pool's statement cache and are reused by the next
+ * operation with the same SQL. Reads inside a unit of work go to the primary, on the bound
+ * connection.
+ * <pre>
+ *    UnitOfWork work = UnitOfWork.begin();
+ *    try {
+ *        ...
+ *    } finally {
+ *        work.close();
+ *    }
+ * </pre>
+ * Units of work nest: the connections are closed when the outermost one closes.
+ */
+public final class UnitOfWork implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(UnitOfWork.class);
+
+	private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<UnitOfWork>();
+
+	private final Map<String, Connection> connections = new HashMap<String, Connection>(4);
+	private int depth;
+
+	private UnitOfWork() {
+	}
+
+	/**
+	 * Starts a unit of work on the current thread, or joins the one already running.
+	 */
+	public static UnitOfWork begin() {
+		UnitOfWork work = CURRENT.get();
+		if (null == work) {
+			work = new UnitOfWork();
+			CURRENT.set(work);
+		}
+		work.depth++;
+		return work;
+	}
+
+	/**
+	 * Runs the work in a unit of work.
+	 */
+	public static void execute(AtomTx atomTx) {
+		UnitOfWork work = begin();
+		try {
+			atomTx.execute();
+		} finally {
+			work.close();
+		}
+	}
+
+	/**
+	 * @return the unit of work of the current thread, or null if none runs
+	 */
+	public static UnitOfWork current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * @return whether the connection is bound to the unit of work of the current thread, in which
+	 *         case only the unit of work closes it
+	 */
+	public static boolean isBound(Connection connection) {
+		UnitOfWork work = CURRENT.get();
+		return null != work && work.connections.containsValue(connection);
+	}
+
+	/**
+	 * The connection bound to a database, opened on first use.
+	 */
+	public Connection connection(String dbName, Sql2o sql2o) {
+		Connection connection = connections.get(dbName);
+		if (null == connection) {
+			connection = sql2o.open();
+			connections.put(dbName, connection);
+		}
+		return connection;
+	}
+
+	@Override
+	public void close() {
+		if (--depth > 0) {
+			return;
+		}
+		CURRENT.remove();
+		for (Connection connection : connections.values()) {
+			try {
+				connection.close();
+			} catch (Sql2oException e) {
+				LOGGER.warn("Could not close connection", e);
+			}
+		}
+		connections.clear();
+	}
+
+}
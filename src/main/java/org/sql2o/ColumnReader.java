@@ -0,0 +1,243 @@
+package org.sql2o;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.sql2o.converters.Converter;
+import org.sql2o.converters.DoubleConverter;
+import org.sql2o.converters.FloatConverter;
+import org.sql2o.converters.IntegerConverter;
+import org.sql2o.converters.LongConverter;
+import org.sql2o.converters.StringConverter;
+import org.sql2o.quirks.Quirks;
+import org.sql2o.reflection.PrimitiveSetter;
+import org.sql2o.reflection.Setter;
+
+/**
+ * Copies one column of the current row into a property of the object being mapped.
+ * <p>
+ * An integer column mapped to an int or long property, or an integer or approximate numeric
+ * column mapped to a double or float property, or their wrappers, is read with the matching typed
+ * getter of the ResultSet instead of getObject, so the value skips the driver's boxing and the
+ * converter that would unbox it again. Columns whose values the typed getter could round or reject
+ * where the converter would not, DECIMAL and NUMERIC, or BIGINT into an int, keep the converter.
+ * A character column mapped to a String property is read with getString. A primitive property whose setter is
+ * a {@link PrimitiveSetter} receives the value without it ever being boxed. Every other column goes through
+ * {@link Quirks#getRSVal(ResultSet, int)} and the converting setter, as before.
+ */
+abstract class ColumnReader {
+
+	final Setter setter;
+
+	ColumnReader(Setter setter) {
+		this.setter = setter;
+	}
+
+	abstract void read(ResultSet rs, int idx, Object pojo) throws SQLException;
+
+	/**
+	 * Name of the ResultSet getter whose result this reader stores unchanged, or null if it tests
+	 * or converts the value. Generated row mappers inline such readers, see RowMapperGenerator.
+	 */
+	String plainGetter() {
+		return null;
+	}
+
+	static ColumnReader generic(final Quirks quirks, Setter setter) {
+		return new ColumnReader(setter) {
+			@Override
+			void read(ResultSet rs, int idx, Object pojo) throws SQLException {
+				setter.setProperty(pojo, quirks.getRSVal(rs, idx));
+			}
+		};
+	}
+
+	/**
+	 * @param setter    the property setter itself, not wrapped in its converter
+	 * @param converter the converter registered for the property type
+	 * @return a reader using a typed getter, or null if the column or property does not allow one
+	 */
+	static ColumnReader typed(Setter setter, Converter<?> converter, int sqlType) {
+		if (setter == null || converter == null) {
+			return null;
+		}
+		// a converter registered by the application replaces the built-in conversion
+		Class<?> type = setter.getType();
+		if (type == String.class && isCharacter(sqlType)) {
+			return converter.getClass() == StringConverter.class ? new StringReader(setter) : null;
+		}
+		if ((type == int.class || type == Integer.class) && isInteger(sqlType) && sqlType != Types.BIGINT) {
+			return converter.getClass() == IntegerConverter.class ? new IntReader(setter, type.isPrimitive()) : null;
+		}
+		if ((type == long.class || type == Long.class) && isInteger(sqlType)) {
+			return converter.getClass() == LongConverter.class ? new LongReader(setter, type.isPrimitive()) : null;
+		}
+		if ((type == double.class || type == Double.class) && (isInteger(sqlType) || isApproximate(sqlType))) {
+			return converter.getClass() == DoubleConverter.class ? new DoubleReader(setter, type.isPrimitive()) : null;
+		}
+		if ((type == float.class || type == Float.class) && (isInteger(sqlType) || isApproximate(sqlType))) {
+			return converter.getClass() == FloatConverter.class ? new FloatReader(setter, type.isPrimitive()) : null;
+		}
+		return null;
+	}
+
+	private static boolean isInteger(int sqlType) {
+		switch (sqlType) {
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+		case Types.BIGINT:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private static boolean isApproximate(int sqlType) {
+		switch (sqlType) {
+		case Types.REAL:
+		case Types.FLOAT:
+		case Types.DOUBLE:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private static boolean isCharacter(int sqlType) {
+		switch (sqlType) {
+		case Types.CHAR:
+		case Types.VARCHAR:
+		case Types.LONGVARCHAR:
+		case Types.NCHAR:
+		case Types.NVARCHAR:
+		case Types.LONGNVARCHAR:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private static final class StringReader extends ColumnReader {
+		StringReader(Setter setter) {
+			super(setter);
+		}
+
+		@Override
+		void read(ResultSet rs, int idx, Object pojo) throws SQLException {
+			setter.setProperty(pojo, rs.getString(idx));
+		}
+
+		@Override
+		String plainGetter() {
+			return "getString";
+		}
+	}
+
+	// A NULL column reads as 0, which is what the primitive converters turn null into as well
+
+	private static final class IntReader extends ColumnReader {
+		private final boolean primitive;
+		private final PrimitiveSetter primitiveSetter;
+
+		IntReader(Setter setter, boolean primitive) {
+			super(setter);
+			this.primitive = primitive;
+			this.primitiveSetter = primitive && setter instanceof PrimitiveSetter ? (PrimitiveSetter) setter : null;
+		}
+
+		@Override
+		void read(ResultSet rs, int idx, Object pojo) throws SQLException {
+			int value = rs.getInt(idx);
+			if (primitiveSetter != null) {
+				primitiveSetter.setInt(pojo, value);
+			} else {
+				setter.setProperty(pojo, !primitive && value == 0 && rs.wasNull() ? null : Integer.valueOf(value));
+			}
+		}
+
+		@Override
+		String plainGetter() {
+			return primitive ? "getInt" : null;
+		}
+	}
+
+	private static final class LongReader extends ColumnReader {
+		private final boolean primitive;
+		private final PrimitiveSetter primitiveSetter;
+
+		LongReader(Setter setter, boolean primitive) {
+			super(setter);
+			this.primitive = primitive;
+			this.primitiveSetter = primitive && setter instanceof PrimitiveSetter ? (PrimitiveSetter) setter : null;
+		}
+
+		@Override
+		void read(ResultSet rs, int idx, Object pojo) throws SQLException {
+			long value = rs.getLong(idx);
+			if (primitiveSetter != null) {
+				primitiveSetter.setLong(pojo, value);
+			} else {
+				setter.setProperty(pojo, !primitive && value == 0 && rs.wasNull() ? null : Long.valueOf(value));
+			}
+		}
+
+		@Override
+		String plainGetter() {
+			return primitive ? "getLong" : null;
+		}
+	}
+
+	private static final class DoubleReader extends ColumnReader {
+		private final boolean primitive;
+		private final PrimitiveSetter primitiveSetter;
+
+		DoubleReader(Setter setter, boolean primitive) {
+			super(setter);
+			this.primitive = primitive;
+			this.primitiveSetter = primitive && setter instanceof PrimitiveSetter ? (PrimitiveSetter) setter : null;
+		}
+
+		@Override
+		void read(ResultSet rs, int idx, Object pojo) throws SQLException {
+			double value = rs.getDouble(idx);
+			if (primitiveSetter != null) {
+				primitiveSetter.setDouble(pojo, value);
+			} else {
+				setter.setProperty(pojo, !primitive && value == 0 && rs.wasNull() ? null : Double.valueOf(value));
+			}
+		}
+
+		@Override
+		String plainGetter() {
+			return primitive ? "getDouble" : null;
+		}
+	}
+
+	private static final class FloatReader extends ColumnReader {
+		private final boolean primitive;
+		private final PrimitiveSetter primitiveSetter;
+
+		FloatReader(Setter setter, boolean primitive) {
+			super(setter);
+			this.primitive = primitive;
+			this.primitiveSetter = primitive && setter instanceof PrimitiveSetter ? (PrimitiveSetter) setter : null;
+		}
+
+		@Override
+		void read(ResultSet rs, int idx, Object pojo) throws SQLException {
+			float value = rs.getFloat(idx);
+			if (primitiveSetter != null) {
+				primitiveSetter.setFloat(pojo, value);
+			} else {
+				setter.setProperty(pojo, !primitive && value == 0 && rs.wasNull() ? null : Float.valueOf(value));
+			}
+		}
+
+		@Override
+		String plainGetter() {
+			return primitive ? "getFloat" : null;
+		}
+	}
+}
@@ -25,6 +25,8 @@ public class Connection implements AutoCloseable, Closeable {
     private final static Logger logger = LocalLoggerFactory.getLogger(Connection.class);
 
     private java.sql.Connection jdbcConnection;
+    // tracked locally so that creating a query does not ask the driver
+    private boolean jdbcConnectionClosed;
     private Sql2o sql2o;
 
     private Integer result = null;
@@ -56,11 +58,28 @@ public class Connection implements AutoCloseable, Closeable {
 
     final boolean autoClose;
 
+    // borrow the JDBC connection on the first statement and return it after each one
+    private final boolean lazy;
+    // open result sets and pending batches, which need the JDBC connection to stay
+    private int holds;
+    // incremented whenever a JDBC connection is acquired, so that queries notice their
+    // statements belong to a connection that is gone
+    int generation;
+
     Connection(Sql2o sql2o, boolean autoClose) {
+        this(sql2o, autoClose, false);
+    }
+
+    Connection(Sql2o sql2o, boolean autoClose, boolean lazy) {
 
         this.autoClose = autoClose;
+        this.lazy = lazy;
         this.sql2o = sql2o;
-        createConnection();
+        if (lazy) {
+            this.jdbcConnectionClosed = true;
+        } else {
+            createConnection();
+        }
     }
 
     void onException() {
@@ -69,42 +88,81 @@ public class Connection implements AutoCloseable, Closeable {
         }
     }
 
+    /**
+     * The JDBC connection; for a lazy connection, acquiring one if it has none.
+     */
     public java.sql.Connection getJdbcConnection() {
+        if (lazy && jdbcConnectionClosed) {
+            createConnection();
+        }
         return jdbcConnection;
     }
 
-    public Sql2o getSql2o() {
-        return sql2o;
+    public boolean isLazy() {
+        return lazy;
     }
 
-    public Query createQuery(String queryText){
-        boolean returnGeneratedKeys = this.sql2o.getQuirks().returnGeneratedKeysByDefault();
-        return createQuery(queryText, returnGeneratedKeys);
+    void hold() {
+        holds++;
     }
 
-    public Query createQuery(String queryText, boolean returnGeneratedKeys){
+    void unhold() {
+        holds--;
+    }
 
+    /**
+     * Hands the JDBC connection of a lazy connection back to the pool once no result set or batch
+     * needs it, unless a transaction was started on it.
+     */
+    void releaseIfLazy() {
+        if (!lazy || holds > 0 || jdbcConnectionClosed) {
+            return;
+        }
         try {
-            if (jdbcConnection.isClosed()){
-                createConnection();
+            if (!jdbcConnection.getAutoCommit()) {
+                return;
             }
         } catch (SQLException e) {
-            throw new Sql2oException("Error creating connection", e);
+            // a connection that cannot tell is broken, there is no transaction left to keep
+            logger.warn("Could not determine connection auto commit mode.", e);
         }
+        closeJdbcConnection();
+    }
 
+    public Sql2o getSql2o() {
+        return sql2o;
+    }
+
+    public Query createQuery(String queryText){
+        boolean returnGeneratedKeys = this.sql2o.getQuirks().returnGeneratedKeysByDefault();
+        return createQuery(queryText, returnGeneratedKeys);
+    }
+
+    public Query createQuery(String queryText, boolean returnGeneratedKeys){
+        reopenIfClosed();
         return new Query(this, queryText, returnGeneratedKeys);
     }
 
     public Query createQuery(String queryText, String ... columnNames) {
+        reopenIfClosed();
+        return new Query(this, queryText, columnNames);
+    }
+
+    /**
+     * Replaces the JDBC connection of an eager connection if it was closed, also if it was closed
+     * outside sql2o. A lazy connection borrows a new one when its next statement executes.
+     */
+    private void reopenIfClosed() {
+        if (lazy) {
+            return;
+        }
         try {
-            if (jdbcConnection.isClosed()) {
+            if (jdbcConnectionClosed || jdbcConnection.isClosed()) {
                 createConnection();
             }
-        } catch(SQLException e) {
+        } catch (SQLException e) {
             throw new Sql2oException("Error creating connection", e);
         }
-
-        return new Query(this, queryText, columnNames);
     }
 
     public Query createQueryWithParams(String queryText, Object... paramValues){
@@ -120,6 +178,10 @@ public class Connection implements AutoCloseable, Closeable {
     }
 
     public Connection rollback(boolean closeConnection){
+        if (lazy && jdbcConnectionClosed) {
+            // the last statement already returned the connection, nothing is pending
+            return this;
+        }
         try {
             jdbcConnection.rollback();
         }
@@ -137,6 +199,9 @@ public class Connection implements AutoCloseable, Closeable {
     }
 
     public Connection commit(boolean closeConnection){
+        if (lazy && jdbcConnectionClosed) {
+            return this;
+        }
         try {
             jdbcConnection.commit();
         }
@@ -257,22 +322,13 @@ public class Connection implements AutoCloseable, Closeable {
     public void close() {
         boolean connectionIsClosed;
         try {
-            connectionIsClosed = jdbcConnection.isClosed();
+            connectionIsClosed = jdbcConnectionClosed || jdbcConnection.isClosed();
         } catch (SQLException e) {
             throw new Sql2oException("Sql2o encountered a problem while trying to determine whether the connection is closed.", e);
         }
 
         if (!connectionIsClosed) {
 
-            for (Statement statement : statements) {
-                try {
-                    getSql2o().getQuirks().closeStatement(statement);
-                } catch (Throwable e) {
-                    logger.warn("Could not close statement.", e);
-                }
-            }
-            statements.clear();
-
             boolean rollback = rollbackOnClose;
             if (rollback) {
                 try {
@@ -295,6 +351,8 @@ public class Connection implements AutoCloseable, Closeable {
     private void createConnection(){
         try{
             this.jdbcConnection = this.sql2o.getDataSource().getConnection();
+            this.jdbcConnectionClosed = false;
+            this.generation++;
         }
         catch(Exception ex){
             throw new Sql2oException("Could not acquire a connection from DataSource - " + ex.getMessage(), ex);
@@ -302,6 +360,18 @@ public class Connection implements AutoCloseable, Closeable {
     }
 
     private void closeJdbcConnection() {
+        // statements must be closed before a pooled connection is handed to another thread
+        for (Statement statement : statements) {
+            try {
+                getSql2o().getQuirks().closeStatement(statement);
+            } catch (Throwable e) {
+                logger.warn("Could not close statement.", e);
+            }
+        }
+        statements.clear();
+        holds = 0;
+
+        jdbcConnectionClosed = true;
         try {
             jdbcConnection.close();
         }
@@ -0,0 +1,250 @@
+package org.sql2o;
+
+import org.sql2o.logging.LocalLoggerFactory;
+import org.sql2o.logging.Logger;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A point in time by which the statements of a request must have completed.
+ * <p>
+ * A deadline bound to a thread with {@link #enter(long, TimeUnit)} applies to every {@link Query}
+ * that thread executes until the returned scope is closed:
+ * <pre>
+ *    Deadline.Scope scope = Deadline.enter(2, TimeUnit.SECONDS);
+ *    try {
+ *        ...
+ *    } finally {
+ *        scope.close();
+ *    }
+ * </pre>
+ * The time left is passed to the driver as the query timeout, and the statement is cancelled when
+ * the deadline passes, so that the connection goes back to the pool even if the driver ignores
+ * the timeout.
+ */
+public final class Deadline {
+
+    private final static Logger logger = LocalLoggerFactory.getLogger(Deadline.class);
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<Deadline>();
+
+    // only times the deadlines, a cancel() blocked on the network must not hold up the others
+    private static final ScheduledThreadPoolExecutor TIMER;
+
+    private static final ThreadPoolExecutor CANCELLER;
+
+    static {
+        TIMER = new ScheduledThreadPoolExecutor(1, daemonThreads("sql2o-deadline-timer"));
+        // most statements complete in time, their cancellations must not pile up in the queue
+        TIMER.setRemoveOnCancelPolicy(true);
+        CANCELLER = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), daemonThreads("sql2o-statement-canceller"));
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private final long nanos;
+
+    private Deadline(long nanos) {
+        this.nanos = nanos;
+    }
+
+    public static Deadline after(long timeout, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * @return the deadline bound to the current thread, or null if none is
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds a deadline to the current thread, unless an earlier one is bound already.
+     */
+    public static Scope enter(long timeout, TimeUnit unit) {
+        return enter(after(timeout, unit));
+    }
+
+    /**
+     * Binds a deadline to the current thread, unless an earlier one is bound already. A deadline
+     * taken from {@link #current()} can be entered on another thread that works for the same
+     * request.
+     */
+    public static Scope enter(Deadline deadline) {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(earliest(previous, deadline));
+        return new Scope(previous);
+    }
+
+    public long remaining(TimeUnit unit) {
+        return unit.convert(nanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isExpired() {
+        return nanos - System.nanoTime() <= 0;
+    }
+
+    static Deadline earliest(Deadline a, Deadline b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return a.nanos - b.nanos <= 0 ? a : b;
+    }
+
+    /**
+     * Applies the time left as the query timeout and schedules the cancellation of the statement.
+     *
+     * @throws Sql2oException if the deadline has already passed
+     */
+    Cancellation arm(Statement statement) {
+        long remaining = nanos - System.nanoTime();
+        if (remaining <= 0) {
+            throw new Sql2oException("Deadline exceeded before the statement was executed");
+        }
+        try {
+            // a timeout of 0 would mean no timeout
+            statement.setQueryTimeout((int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining + 999999999L)));
+        } catch (SQLException e) {
+            logger.debug("Query timeout not supported: {}", e.getMessage());
+        }
+        Cancellation cancellation = new Cancellation(statement);
+        cancellation.future = TIMER.schedule(cancellation, remaining, TimeUnit.NANOSECONDS);
+        return cancellation;
+    }
+
+    /**
+     * Restores the deadline that was bound before {@link #enter(Deadline)}.
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final Deadline previous;
+
+        private Scope(Deadline previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * The pending cancellation of a statement, disarmed once the statement completes. Whichever
+     * of the deadline and {@link #disarm()} comes first wins, so the statement is only cancelled
+     * while it still executes the statement it was armed for.
+     */
+    static final class Cancellation implements Runnable {
+
+        private static final int ARMED = 0;
+        private static final int CANCELLING = 1;
+        private static final int FIRED = 2;
+        private static final int DISARMED = 3;
+
+        private final Statement statement;
+        private final AtomicInteger state = new AtomicInteger(ARMED);
+        // counted down once cancel() returned; a latch parks the waiter without holding a monitor
+        private final CountDownLatch cancelled = new CountDownLatch(1);
+        private volatile ScheduledFuture<?> future;
+
+        private Cancellation(Statement statement) {
+            this.statement = statement;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(ARMED, CANCELLING)) {
+                return;
+            }
+            try {
+                CANCELLER.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        cancel();
+                    }
+                });
+            } catch (RuntimeException e) {
+                cancel();
+            }
+        }
+
+        private void cancel() {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                logger.warn("Could not cancel statement after its deadline", e);
+            } finally {
+                state.set(FIRED);
+                cancelled.countDown();
+            }
+        }
+
+        /**
+         * Stops the cancellation, or waits for the statement to be cancelled if the deadline came
+         * first, so that the cancel cannot hit a later execution of the statement.
+         */
+        void disarm() {
+            if (state.compareAndSet(ARMED, DISARMED)) {
+                future.cancel(false);
+            } else if (state.get() != DISARMED) {
+                awaitCancelled();
+            }
+            try {
+                // the statement may be reused without a deadline
+                statement.setQueryTimeout(0);
+            } catch (SQLException e) {
+                logger.debug("Could not reset query timeout: {}", e.getMessage());
+            }
+        }
+
+        private void awaitCancelled() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    cancelled.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        boolean isFired() {
+            int current = state.get();
+            return current == CANCELLING || current == FIRED;
+        }
+    }
+
+}
@@ -12,6 +12,7 @@ import org.sql2o.reflection.Pojo;
 import org.sql2o.reflection.PojoMetadata;
 import org.sql2o.reflection.Setter;
 import org.sql2o.tools.AbstractCache;
+import org.sql2o.tools.FingerprintCache;
 
 public class DefaultResultSetHandlerFactory<T> implements ResultSetHandlerFactory<T> {
 	private final PojoMetadata metadata;
@@ -113,6 +114,20 @@ public class DefaultResultSetHandlerFactory<T> implements ResultSetHandlerFactor
 		};
 	}
 
+	private ColumnReader getReader(String colName, Setter setter, int sqlType) {
+		if (colName.indexOf('.') <= 0) {
+			Setter property = metadata.getPropertySetterIfExists(colName);
+			ColumnReader reader = ColumnReader.typed(property, converterOf(property.getType()), sqlType);
+			if (reader != null)
+				return reader;
+		}
+		return ColumnReader.generic(quirks, setter);
+	}
+
+	private Converter<?> converterOf(Class<?> type) {
+		return quirks.converterOf(type);
+	}
+
 	private static class Key {
 		final String stringKey;
 		final DefaultResultSetHandlerFactory<?> f;
@@ -169,13 +184,59 @@ public class DefaultResultSetHandlerFactory<T> implements ResultSetHandlerFactor
 		}
 	};
 
+	private static final class SqlKey {
+		final String sql;
+		final DefaultResultSetHandlerFactory<?> f;
+		final int hash;
+
+		SqlKey(String sql, DefaultResultSetHandlerFactory<?> f) {
+			this.sql = sql;
+			this.f = f;
+			this.hash = 31 * (31 * sql.hashCode() + f.metadata.hashCode()) + f.quirks.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o)
+				return true;
+			if (!(o instanceof SqlKey))
+				return false;
+
+			SqlKey key = (SqlKey) o;
+
+			return hash == key.hash && f.quirks == key.f.quirks
+					&& f.metadata.throwOnMappingFailure == key.f.metadata.throwOnMappingFailure
+					&& sql.equals(key.sql) && f.metadata.equals(key.f.metadata);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	/**
+	 * Like {@link #newResultSetHandler(ResultSetMetaData)}, but remembers the handler per SQL text in
+	 * the cache of the Sql2o that ran the statement. A repeated execution reads the column labels and
+	 * types once for the fingerprint and skips the handler lookup when they did not change.
+	 */
 	@SuppressWarnings("unchecked")
-	public ResultSetHandler<T> newResultSetHandler(final ResultSetMetaData meta) throws SQLException {
-		StringBuilder stringBuilder = new StringBuilder();
-		for (int i = 1; i <= meta.getColumnCount(); i++) {
-			stringBuilder.append(quirks.getColumnName(meta, i)).append("\n");
+	public ResultSetHandler<T> newResultSetHandler(String sql, final ResultSetMetaData meta,
+			FingerprintCache<Object, Object> cache) throws SQLException {
+		SqlKey key = new SqlKey(sql, this);
+		String fingerprint = FingerprintCache.fingerprint(quirks, meta);
+		ResultSetHandler<T> handler = (ResultSetHandler<T>) cache.get(key, fingerprint);
+		if (handler == null) {
+			handler = c.get(new Key(fingerprint, this), meta);
+			cache.put(key, fingerprint, handler);
 		}
-		return c.get(new Key(stringBuilder.toString(), this), meta);
+		return handler;
+	}
+
+	@SuppressWarnings("unchecked")
+	public ResultSetHandler<T> newResultSetHandler(final ResultSetMetaData meta) throws SQLException {
+		// the column type decides how the column is read, see ColumnReader
+		return c.get(new Key(FingerprintCache.fingerprint(quirks, meta), this), meta);
 
 	}
 
@@ -183,6 +244,7 @@ public class DefaultResultSetHandlerFactory<T> implements ResultSetHandlerFactor
 	private ResultSetHandler<T> newResultSetHandler0(final ResultSetMetaData meta) throws SQLException {
 		final Getter[] getters;
 		final Setter[] setters;
+		final ColumnReader[] readers;
 		final Converter<?> converter;
 		final boolean useExecuteScalar;
 		// TODO: it's possible to cache converter/setters/getters
@@ -206,10 +268,16 @@ public class DefaultResultSetHandlerFactory<T> implements ResultSetHandlerFactor
 		}
 
 		setters = new Setter[columnCount + 1]; // setters[0] is always null
+		readers = new ColumnReader[columnCount + 1];
+		final String[] columnNames = new String[columnCount + 1];
 		for (int i = 1; i <= columnCount; i++) {
 			String colName = quirks.getColumnName(meta, i);
+			columnNames[i] = colName;
 
 			setters[i] = getSetter(quirks, colName, metadata);
+			if (setters[i] != null) {
+				readers[i] = getReader(colName, setters[i], meta.getColumnType(i));
+			}
 
 			// If more than 1 column is fetched (we cannot fall back to
 			// executeScalar),
@@ -223,6 +291,11 @@ public class DefaultResultSetHandlerFactory<T> implements ResultSetHandlerFactor
 		 * column, and no property setter exists for the column.
 		 */
 		useExecuteScalar = converter != null && columnCount == 1 && setters[1] == null;
+		if (!useExecuteScalar) {
+			ResultSetHandler<T> generated = RowMapperGenerator.generate(metadata, columnNames, readers);
+			if (generated != null)
+				return generated;
+		}
 		return new ResultSetHandler<T>() {
 			public T handle(ResultSet resultSet) throws SQLException {
 				if (useExecuteScalar) {
@@ -237,10 +310,10 @@ public class DefaultResultSetHandlerFactory<T> implements ResultSetHandlerFactor
 				// otherwise we want executeAndFetch with object mapping
 				Object pojo = metadata.getObjectConstructor().newInstance();
 				for (int colIdx = 1; colIdx <= columnCount; colIdx++) {
-					Setter setter = setters[colIdx];
-					if (setter == null)
+					ColumnReader reader = readers[colIdx];
+					if (reader == null)
 						continue;
-					setter.setProperty(pojo, quirks.getRSVal(resultSet, colIdx));
+					reader.read(resultSet, colIdx, pojo);
 				}
 
 				return (T) pojo;
@@ -0,0 +1,35 @@
+package org.sql2o;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.sql2o.reflection.ObjectConstructor;
+
+/**
+ * Base class of the row mappers {@link RowMapperGenerator} defines at runtime. It is public only
+ * because the generated classes live in a class loader of their own; do not extend it.
+ */
+public abstract class FusedResultSetHandler<T> implements ResultSetHandler<T> {
+
+	private ColumnReader[] readers;
+	private ObjectConstructor constructor;
+
+	protected FusedResultSetHandler() {
+	}
+
+	final void init(ColumnReader[] readers, ObjectConstructor constructor) {
+		this.readers = readers;
+		this.constructor = constructor;
+	}
+
+	protected final Object newInstance() {
+		return constructor.newInstance();
+	}
+
+	/**
+	 * Maps a column the generated code does not assign itself.
+	 */
+	protected final void read(ResultSet rs, int columnIndex, Object pojo) throws SQLException {
+		readers[columnIndex].read(rs, columnIndex, pojo);
+	}
+}
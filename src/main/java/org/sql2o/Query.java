@@ -18,6 +18,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import org.sql2o.converters.Converter;
 import org.sql2o.converters.ConverterException;
@@ -28,6 +29,7 @@ import org.sql2o.data.TableResultSetIterator;
 import org.sql2o.logging.LocalLoggerFactory;
 import org.sql2o.logging.Logger;
 import org.sql2o.quirks.Quirks;
+import org.sql2o.quirks.parameterparsing.ParsedSql;
 import org.sql2o.reflection.PojoIntrospector;
 
 import com.blade.jdbc.Model;
@@ -43,17 +45,28 @@ public class Query {
     private Map<String, String> caseSensitiveColumnMappings;
     private Map<String, String> columnMappings;
     private PreparedStatement preparedStatement = null;
+    // Connection.generation the statement was prepared on
+    private int statementGeneration;
+    private boolean batchPending;
     private boolean caseSensitive;
     private boolean autoDeriveColumnNames;
     private boolean throwOnMappingFailure = true;
     private String name;
     private boolean returnGeneratedKeys;
     private final String[] columnNames;
-    private final Map<String, List<Integer>> paramNameToIdxMap;
+    // shared with every query of the same text until array parameters rewrite it
+    private Map<String, List<Integer>> paramNameToIdxMap;
+    private boolean paramNameToIdxMapShared;
     private final Map<String, ParameterSetter> parameters;
+    // values bound by position through withParams, see ParsedSql.getPositionalIndexes()
+    private final int[][] positionalIndexes;
+    private Object[] positionalValues;
+    private int positionalCount;
     private String parsedQuery;
     private int maxBatchRecords = 0;
     private int currentBatchRecords = 0;
+    private long timeoutNanos;
+    private Deadline deadline;
 
     private ResultSetHandlerFactoryBuilder resultSetHandlerFactoryBuilder;
 
@@ -74,13 +87,17 @@ public class Query {
         this.connection = connection;
         this.returnGeneratedKeys = returnGeneratedKeys;
         this.columnNames = columnNames;
-        this.setColumnMappings(connection.getSql2o().getDefaultColumnMappings());
-        this.caseSensitive = connection.getSql2o().isDefaultCaseSensitive();
+        Sql2o sql2o = connection.getSql2o();
+        this.setColumnMappings(sql2o.getDefaultColumnMappings());
+        this.caseSensitive = sql2o.isDefaultCaseSensitive();
 
-        paramNameToIdxMap = new HashMap<String, List<Integer>>();
         parameters = new HashMap<String, ParameterSetter>();
 
-        parsedQuery = connection.getSql2o().getQuirks().getSqlParameterParsingStrategy().parseSql(queryText, paramNameToIdxMap);
+        ParsedSql parsed = sql2o.getParsedSqlCache().get(queryText, sql2o.getQuirks().getSqlParameterParsingStrategy());
+        parsedQuery = parsed.getSql();
+        paramNameToIdxMap = parsed.getParameterIndexes();
+        paramNameToIdxMapShared = true;
+        positionalIndexes = parsed.getPositionalIndexes();
     }
 
     // ------------------------------------------------
@@ -127,6 +144,28 @@ public class Query {
         return this;
     }
 
+    /**
+     * Limits each execution of this query to the given time, or to the deadline bound to the
+     * thread if that comes first. The statement is cancelled when the time is up.
+     * @param timeout   0 for no timeout of its own
+     */
+    public Query setTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout should be a nonnegative value");
+        }
+        this.timeoutNanos = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * Executions of this query must complete by the deadline, or by the one bound to the thread if
+     * that comes first.
+     */
+    public Query withDeadline(Deadline deadline) {
+        this.deadline = deadline;
+        return this;
+    }
+
     public ResultSetHandlerFactoryBuilder getResultSetHandlerFactoryBuilder() {
         if (resultSetHandlerFactoryBuilder == null) {
             resultSetHandlerFactoryBuilder = new DefaultResultSetHandlerFactoryBuilder();
@@ -150,9 +189,27 @@ public class Query {
         if (!this.getParamNameToIdxMap().containsKey(name)) {
             throw new Sql2oException("Failed to add parameter with name '" + name + "'. No parameter with that name is declared in the sql.");
         }
+        // an array parameter renumbers the positions, and a later call must win over earlier values
+        spillPositionalValues();
         parameters.put(name, parameterSetter);
     }
 
+    /**
+     * Turns the values withParams bound by position into named parameters, as withParams did
+     * before it bound by position.
+     */
+    private void spillPositionalValues() {
+        if (positionalCount == 0) {
+            return;
+        }
+        Object[] values = new Object[positionalCount];
+        System.arraycopy(positionalValues, 0, values, 0, positionalCount);
+        clearPositionalValues();
+        for (int i = 0; i < values.length; i++) {
+            addParameter("p" + (i + 1), values[i]);
+        }
+    }
+
     @SuppressWarnings("unchecked")
 	private Object convertParameter(Object value) {
         if (value == null) {
@@ -202,7 +259,27 @@ public class Query {
         return this;
     }
 
+    /**
+     * Sets the parameters named p1, p2... to the given values, in that order. When the statement
+     * names its parameters p1 to pN and no value is an array or collection, the values are bound by
+     * position without creating a parameter setter for each of them.
+     */
     public Query withParams(Object... paramValues){
+        if (canBindPositionally(paramValues)) {
+            if (positionalValues == null) {
+                positionalValues = new Object[positionalIndexes.length];
+            }
+            System.arraycopy(paramValues, 0, positionalValues, 0, paramValues.length);
+            if (!parameters.isEmpty()) {
+                // these values replace the ones added by name before
+                for (int i = 1; i <= paramValues.length; i++) {
+                    parameters.remove("p" + i);
+                }
+            }
+            // values set earlier for the parameters after these stay, as they would by name
+            positionalCount = Math.max(positionalCount, paramValues.length);
+            return this;
+        }
         int i=0;
         for (Object paramValue : paramValues) {
             addParameter("p" + (++i), paramValue);
@@ -210,6 +287,20 @@ public class Query {
         return this;
     }
 
+    private boolean canBindPositionally(Object[] paramValues) {
+        if (positionalIndexes == null || paramValues.length > positionalIndexes.length || !paramNameToIdxMapShared
+                || hasArrayParameter()) {
+            return false;
+        }
+        for (Object value : paramValues) {
+            if (value instanceof Collection || value != null && value.getClass().isArray() && !(value instanceof byte[])) {
+                // array parameters change the statement text
+                return false;
+            }
+        }
+        return true;
+    }
+
     @SuppressWarnings("unchecked")
     public Query addParameter(String name, Object value) {
         return value == null
@@ -406,6 +497,11 @@ public class Query {
     }
 
     public void close() {
+        clearPositionalValues();
+        if (batchPending) {
+            batchPending = false;
+            connection.unhold();
+        }
         if(preparedStatement != null) {
             connection.removeStatement(preparedStatement);
             try {
@@ -420,6 +516,64 @@ public class Query {
     // -------------------- Execute -------------------
     // ------------------------------------------------
 
+    /**
+     * Binds the values set by withParams, choosing the quirks method the named path would use.
+     * The values are kept, so that the query can be executed again, also on a statement prepared
+     * anew, until close() or addToBatch() clears them.
+     */
+    private void bindPositionalValues() {
+        Quirks quirks = getQuirks();
+        for (int slot = 0; slot < positionalCount; slot++) {
+            Object value = positionalValues[slot];
+            try {
+                for (int paramIdx : positionalIndexes[slot]) {
+                    setPositionalParameter(quirks, paramIdx, value);
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(String.format("Error adding parameter 'p%d' - %s", slot + 1, e.getMessage()), e);
+            }
+        }
+    }
+
+    private void clearPositionalValues() {
+        for (int slot = 0; slot < positionalCount; slot++) {
+            positionalValues[slot] = null;
+        }
+        positionalCount = 0;
+    }
+
+    private void setPositionalParameter(Quirks quirks, int paramIdx, Object value) throws SQLException {
+        if (value == null) {
+            quirks.setParameter(preparedStatement, paramIdx, (Object) null);
+        } else if (value instanceof InputStream) {
+            quirks.setParameter(preparedStatement, paramIdx, (InputStream) value);
+        } else {
+            Class<?> type = value.getClass();
+            if (type == Integer.class) {
+                quirks.setParameter(preparedStatement, paramIdx, (Integer) value);
+            } else if (type == Long.class) {
+                quirks.setParameter(preparedStatement, paramIdx, (Long) value);
+            } else if (type == String.class) {
+                quirks.setParameter(preparedStatement, paramIdx, (String) value);
+            } else if (type == Timestamp.class) {
+                quirks.setParameter(preparedStatement, paramIdx, (Timestamp) value);
+            } else if (type == Time.class) {
+                quirks.setParameter(preparedStatement, paramIdx, (Time) value);
+            } else {
+                quirks.setParameter(preparedStatement, paramIdx, convertParameter(value));
+            }
+        }
+    }
+
+    private boolean hasArrayParameter() {
+        for (ParameterSetter setter : parameters.values()) {
+            if (setter.parameterCount > 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     // visible for testing
     PreparedStatement buildPreparedStatement() {
         return buildPreparedStatement(true);
@@ -427,25 +581,45 @@ public class Query {
 
     private PreparedStatement buildPreparedStatement(boolean allowArrayParameters) {
         // array parameter handling
-        parsedQuery = ArrayParameters.updateQueryAndParametersIndexes(parsedQuery, paramNameToIdxMap, parameters, allowArrayParameters);
+        if (!parameters.isEmpty()) {
+            if (paramNameToIdxMapShared && hasArrayParameter()) {
+                paramNameToIdxMap = new HashMap<String, List<Integer>>(paramNameToIdxMap);
+                paramNameToIdxMapShared = false;
+            }
+            parsedQuery = ArrayParameters.updateQueryAndParametersIndexes(parsedQuery, paramNameToIdxMap, parameters, allowArrayParameters);
+        }
+
+        // a lazy connection may have returned the JDBC connection, closing its statements; the
+        // generation only moves on once it borrows the next one
+        java.sql.Connection jdbcConnection = connection.getJdbcConnection();
+        if (preparedStatement != null && statementGeneration != connection.generation) {
+            preparedStatement = null;
+        }
 
         // prepare statement creation
         if(preparedStatement == null) {
             try {
                 if (columnNames != null && columnNames.length > 0){
-                    preparedStatement = connection.getJdbcConnection().prepareStatement(parsedQuery, columnNames);
+                    preparedStatement = jdbcConnection.prepareStatement(parsedQuery, columnNames);
                 } else if (returnGeneratedKeys) {
-                    preparedStatement = connection.getJdbcConnection().prepareStatement(parsedQuery, Statement.RETURN_GENERATED_KEYS);
+                    preparedStatement = jdbcConnection.prepareStatement(parsedQuery, Statement.RETURN_GENERATED_KEYS);
                 } else {
-                    preparedStatement = connection.getJdbcConnection().prepareStatement(parsedQuery);
+                    preparedStatement = jdbcConnection.prepareStatement(parsedQuery);
                 }
             } catch(SQLException ex) {
                 throw new Sql2oException(String.format("Error preparing statement - %s", ex.getMessage()), ex);
             }
             connection.registerStatement(preparedStatement);
+            statementGeneration = connection.generation;
         }
 
         // parameters assignation to query
+        if (positionalCount > 0) {
+            bindPositionalValues();
+        }
+        if (parameters.isEmpty()) {
+            return preparedStatement;
+        }
         for(Map.Entry<String, ParameterSetter> parameter : parameters.entrySet()) {
             for (int paramIdx : paramNameToIdxMap.get(parameter.getKey())) {
                 try {
@@ -468,6 +642,9 @@ public class Query {
         private long start;
         private long afterExecQuery;
         protected ResultSet rs;
+        private boolean held;
+        // reading the rows counts against the deadline as well
+        private Deadline.Cancellation cancellation;
 
         boolean autoCloseConnection = false;
 
@@ -475,11 +652,21 @@ public class Query {
             try {
                 start = System.currentTimeMillis();
                 logExecution();
-                rs = buildPreparedStatement().executeQuery();
+                PreparedStatement statement = buildPreparedStatement();
+                cancellation = arm(statement);
+                rs = statement.executeQuery();
                 afterExecQuery = System.currentTimeMillis();
+                connection.hold();
+                held = true;
             }
             catch (SQLException ex) {
-                throw new Sql2oException("Database error: " + ex.getMessage(), ex);
+                throw new Sql2oException(cancelled(cancellation) + "Database error: " + ex.getMessage(), ex);
+            }
+            finally {
+                if (!held) {
+                    disarm(cancellation);
+                    connection.releaseIfLazy();
+                }
             }
         }
 
@@ -505,6 +692,12 @@ public class Query {
                 throw new Sql2oException("Error closing ResultSet.", ex);
             }
             finally {
+                disarm(cancellation);
+                cancellation = null;
+                if (held) {
+                    held = false;
+                    connection.unhold();
+                }
                 if (this.isAutoCloseConnection()){
                     connection.close();
                 } else {
@@ -561,11 +754,24 @@ public class Query {
         final Quirks quirks = getConnection().getSql2o().getQuirks();
         return new ResultSetIterableBase<T>() {
             public Iterator<T> iterator() {
-                return new PojoResultSetIterator<T>(rs, isCaseSensitive(), quirks, resultSetHandlerFactory);
+                return new PojoResultSetIterator<T>(rs, isCaseSensitive(), quirks, newResultSetHandler(resultSetHandlerFactory, rs));
             }
         };
     }
 
+    private <T> ResultSetHandler<T> newResultSetHandler(ResultSetHandlerFactory<T> factory, ResultSet rs) {
+        try {
+            if (factory instanceof DefaultResultSetHandlerFactory) {
+                // cached per statement, skips the handler lookup
+                return ((DefaultResultSetHandlerFactory<T>) factory).newResultSetHandler(parsedQuery, rs.getMetaData(),
+                        getConnection().getSql2o().getResultSetCache());
+            }
+            return factory.newResultSetHandler(rs.getMetaData());
+        } catch (SQLException e) {
+            throw new Sql2oException("Database error: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Read a collection lazily. Generally speaking, this should only be used if you are reading MANY
      * results and keeping them all in a Collection would cause memory issues. You MUST call
@@ -641,7 +847,9 @@ public class Query {
         final LazyTable lt = new LazyTable();
         lt.setRows(new ResultSetIterableBase<Row>() {
             public Iterator<Row> iterator() {
-                return new TableResultSetIterator(rs, isCaseSensitive(), getConnection().getSql2o().getQuirks(), lt);
+                Sql2o sql2o = getConnection().getSql2o();
+                return new TableResultSetIterator(rs, isCaseSensitive(), sql2o.getQuirks(), lt, parsedQuery,
+                        sql2o.getResultSetCache());
             }
         });
         return lt;
@@ -676,18 +884,21 @@ public class Query {
 
     public Connection executeUpdate(){
         long start = System.currentTimeMillis();
+        Deadline.Cancellation cancellation = null;
         try{
             logExecution();
             PreparedStatement statement = buildPreparedStatement();
+            cancellation = arm(statement);
             this.connection.setResult(statement.executeUpdate());
             this.connection.setKeys(this.returnGeneratedKeys ? statement.getGeneratedKeys() : null);
             connection.setCanGetKeys(this.returnGeneratedKeys);
         }
         catch(SQLException ex){
             this.connection.onException();
-            throw new Sql2oException("Error in executeUpdate, " + ex.getMessage(), ex);
+            throw new Sql2oException(cancelled(cancellation) + "Error in executeUpdate, " + ex.getMessage(), ex);
         }
         finally {
+            disarm(cancellation);
             closeConnectionIfNecessary();
         }
 
@@ -702,9 +913,12 @@ public class Query {
 
     public Object executeScalar(){
         long start = System.currentTimeMillis();
+        Deadline.Cancellation cancellation = null;
         try {
             logExecution();
-            ResultSet rs = buildPreparedStatement().executeQuery();
+            PreparedStatement statement = buildPreparedStatement();
+            cancellation = arm(statement);
+            ResultSet rs = statement.executeQuery();
             if (rs.next()){
                 Object o = getQuirks().getRSVal(rs, 1);
                 long end = System.currentTimeMillis();
@@ -721,9 +935,10 @@ public class Query {
         }
         catch (SQLException e) {
             this.connection.onException();
-            throw new Sql2oException("Database error occurred while running executeScalar: " + e.getMessage(), e);
+            throw new Sql2oException(cancelled(cancellation) + "Database error occurred while running executeScalar: " + e.getMessage(), e);
         }
         finally{
+            disarm(cancellation);
             closeConnectionIfNecessary();
         }
 
@@ -834,6 +1049,12 @@ public class Query {
     public Query addToBatch(){
         try {
             buildPreparedStatement(false).addBatch();
+            // only the values of the next withParams go into the next row
+            clearPositionalValues();
+            if (!batchPending) {
+                batchPending = true;
+                connection.hold();
+            }
             if (this.maxBatchRecords > 0){
                 if(++this.currentBatchRecords % this.maxBatchRecords == 0) {
                     this.executeBatch();
@@ -848,9 +1069,11 @@ public class Query {
 
     public Connection executeBatch() throws Sql2oException {
         long start = System.currentTimeMillis();
+        Deadline.Cancellation cancellation = null;
         try {
             logExecution();
             PreparedStatement statement = buildPreparedStatement();
+            cancellation = arm(statement);
             connection.setBatchResult(statement.executeBatch());
             this.currentBatchRecords = 0;
             try {
@@ -862,9 +1085,14 @@ public class Query {
         }
         catch (Throwable e) {
             this.connection.onException();
-            throw new Sql2oException("Error while executing batch operation: " + e.getMessage(), e);
+            throw new Sql2oException(cancelled(cancellation) + "Error while executing batch operation: " + e.getMessage(), e);
         }
         finally {
+            disarm(cancellation);
+            if (batchPending) {
+                batchPending = false;
+                connection.unhold();
+            }
             closeConnectionIfNecessary();
         }
 
@@ -914,6 +1142,8 @@ public class Query {
         try{
             if (connection.autoClose){
                 connection.close();
+            } else {
+                connection.releaseIfLazy();
             }
         }
         catch (Exception ex){
@@ -921,6 +1151,24 @@ public class Query {
         }
     }
 
+    private Deadline.Cancellation arm(Statement statement) {
+        Deadline effective = Deadline.earliest(this.deadline, Deadline.current());
+        if (timeoutNanos > 0) {
+            effective = Deadline.earliest(effective, Deadline.after(timeoutNanos, TimeUnit.NANOSECONDS));
+        }
+        return effective == null ? null : effective.arm(statement);
+    }
+
+    private static void disarm(Deadline.Cancellation cancellation) {
+        if (cancellation != null) {
+            cancellation.disarm();
+        }
+    }
+
+    private static String cancelled(Deadline.Cancellation cancellation) {
+        return cancellation != null && cancellation.isFired() ? "Statement cancelled at its deadline. " : "";
+    }
+
     private void logExecution() {
         logger.debug("Executing query:{}{}", new Object[]{ System.lineSeparator(), this.parsedQuery } );
     }
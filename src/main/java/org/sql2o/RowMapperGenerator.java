@@ -0,0 +1,372 @@
+package org.sql2o;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sql2o.logging.LocalLoggerFactory;
+import org.sql2o.logging.Logger;
+import org.sql2o.reflection.PojoMetadata;
+
+/**
+ * Defines a {@link ResultSetHandler} class for one POJO type and column layout. Its handle method
+ * is straight-line code: each column that maps to a public field through a {@link ColumnReader}
+ * with a plain getter becomes a typed ResultSet call stored with putfield, such as
+ * <code>pojo.id = rs.getLong(1)</code>. The other columns still go through their reader.
+ * <p>
+ * The class file is written by hand, in version 50 so that it needs no stack map frames, and is
+ * defined in a class loader of its own whose parent is the POJO's class loader. Classes are kept per
+ * POJO type and layout of inlined columns, so every handler of that layout, whatever its SQL text or
+ * converters, shares one class and differs only in its readers.
+ */
+final class RowMapperGenerator {
+
+	private static final Logger logger = LocalLoggerFactory.getLogger(RowMapperGenerator.class);
+
+	private static final AtomicInteger counter = new AtomicInteger();
+
+	private static final ConcurrentMap<Layout, Class<?>> classes = new ConcurrentHashMap<Layout, Class<?>>();
+
+	private static final String BASE = FusedResultSetHandler.class.getName().replace('.', '/');
+	private static final String RESULT_SET = "java/sql/ResultSet";
+
+	private static final Map<String, Class<?>> GETTER_TYPES = new HashMap<String, Class<?>>();
+	static {
+		GETTER_TYPES.put("getInt", int.class);
+		GETTER_TYPES.put("getLong", long.class);
+		GETTER_TYPES.put("getDouble", double.class);
+		GETTER_TYPES.put("getFloat", float.class);
+		GETTER_TYPES.put("getString", String.class);
+	}
+
+	private RowMapperGenerator() {
+	}
+
+	/**
+	 * @param columnNames the column names by column index, element 0 unused
+	 * @param readers     the column readers by column index, null for columns that are not mapped
+	 * @return the generated handler, or null if no column can be inlined or generation failed
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> ResultSetHandler<T> generate(PojoMetadata metadata, String[] columnNames, ColumnReader[] readers) {
+		Class<?> type = metadata.getType();
+		if (!Modifier.isPublic(type.getModifiers()) || type.getClassLoader() == null || readers.length > Short.MAX_VALUE) {
+			return null;
+		}
+
+		Field[] fields = new Field[readers.length];
+		boolean inlined = false;
+		for (int i = 1; i < readers.length; i++) {
+			if (readers[i] != null && readers[i].plainGetter() != null) {
+				fields[i] = inlinableField(metadata, columnNames[i], readers[i].plainGetter());
+				inlined |= fields[i] != null;
+			}
+		}
+		if (!inlined) {
+			return null;
+		}
+
+		try {
+			Layout layout = new Layout(type, readers, fields);
+			Class<?> cls = classes.get(layout);
+			if (cls == null) {
+				String name = "org.sql2o.generated.RowMapper" + counter.incrementAndGet();
+				byte[] code = writeClass(name.replace('.', '/'), type, readers, fields);
+				cls = new Loader(type.getClassLoader()).define(name, code);
+				// two threads may define the same layout, both classes work and the first one stays
+				Class<?> previous = classes.putIfAbsent(layout, cls);
+				if (previous != null) {
+					cls = previous;
+				}
+			}
+			FusedResultSetHandler<T> handler = (FusedResultSetHandler<T>) cls.newInstance();
+			handler.init(readers, metadata.getObjectConstructor());
+			return handler;
+		} catch (Throwable e) {
+			logger.debug("Could not generate a row mapper for {}, using the generic one", new Object[] { type, e });
+			return null;
+		}
+	}
+
+	private static Field inlinableField(PojoMetadata metadata, String columnName, String getter) {
+		if (columnName.indexOf('.') > 0) {
+			return null;
+		}
+		Field field = metadata.getPropertyFieldIfExists(columnName);
+		if (field == null || field.getType() != GETTER_TYPES.get(getter)) {
+			return null;
+		}
+		int modifiers = field.getModifiers();
+		if (!Modifier.isPublic(modifiers) || Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers)
+				|| !Modifier.isPublic(field.getDeclaringClass().getModifiers())) {
+			return null;
+		}
+		return field;
+	}
+
+	/**
+	 * What the code of a generated class depends on: the POJO type and, per column, the getter and
+	 * field it is inlined to, or whether it goes through its reader.
+	 */
+	private static final class Layout {
+		final Class<?> type;
+		final String columns;
+
+		Layout(Class<?> type, ColumnReader[] readers, Field[] fields) {
+			StringBuilder columns = new StringBuilder();
+			for (int i = 1; i < readers.length; i++) {
+				if (fields[i] != null) {
+					columns.append(readers[i].plainGetter()).append(' ')
+							.append(fields[i].getDeclaringClass().getName()).append('.').append(fields[i].getName());
+				} else if (readers[i] != null) {
+					columns.append("read");
+				}
+				columns.append('\n');
+			}
+			this.type = type;
+			this.columns = columns.toString();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Layout)) {
+				return false;
+			}
+			Layout layout = (Layout) o;
+			return type == layout.type && columns.equals(layout.columns);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * type.hashCode() + columns.hashCode();
+		}
+	}
+
+	private static byte[] writeClass(String name, Class<?> type, ColumnReader[] readers, Field[] fields) throws IOException {
+		ConstantPool cp = new ConstantPool();
+		int thisClass = cp.classRef(name);
+		int superClass = cp.classRef(BASE);
+		int code = cp.utf8("Code");
+
+		// <init>: super()
+		ByteArrayOutputStream init = new ByteArrayOutputStream();
+		init.write(0x2a); // aload_0
+		writeRef(init, 0xb7, cp.methodRef(BASE, "<init>", "()V")); // invokespecial
+		init.write(0xb1); // return
+
+		// handle(ResultSet): one statement per mapped column
+		ByteArrayOutputStream handle = new ByteArrayOutputStream();
+		handle.write(0x2a); // aload_0
+		writeRef(handle, 0xb6, cp.methodRef(BASE, "newInstance", "()Ljava/lang/Object;")); // invokevirtual
+		writeRef(handle, 0xc0, cp.classRef(type.getName().replace('.', '/'))); // checkcast
+		handle.write(0x4d); // astore_2
+		int read = cp.methodRef(BASE, "read", "(L" + RESULT_SET + ";ILjava/lang/Object;)V");
+		for (int i = 1; i < readers.length; i++) {
+			if (fields[i] != null) {
+				String descriptor = descriptor(fields[i].getType());
+				handle.write(0x2c); // aload_2
+				handle.write(0x2b); // aload_1
+				pushInt(handle, i);
+				writeRef(handle, 0xb9, cp.interfaceMethodRef(RESULT_SET, readers[i].plainGetter(), "(I)" + descriptor)); // invokeinterface
+				handle.write(2);
+				handle.write(0);
+				writeRef(handle, 0xb5, cp.fieldRef(fields[i].getDeclaringClass().getName().replace('.', '/'),
+						fields[i].getName(), descriptor)); // putfield
+			} else if (readers[i] != null) {
+				handle.write(0x2a); // aload_0
+				handle.write(0x2b); // aload_1
+				pushInt(handle, i);
+				handle.write(0x2c); // aload_2
+				writeRef(handle, 0xb6, read); // invokevirtual
+			}
+		}
+		handle.write(0x2c); // aload_2
+		handle.write(0xb0); // areturn
+
+		int initName = cp.utf8("<init>");
+		int initDescriptor = cp.utf8("()V");
+		int handleName = cp.utf8("handle");
+		int handleDescriptor = cp.utf8("(L" + RESULT_SET + ";)Ljava/lang/Object;");
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0); // minor version
+		out.writeShort(50); // Java 6: type inference verification, no stack map frames needed
+		cp.writeTo(out);
+		out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+		out.writeShort(thisClass);
+		out.writeShort(superClass);
+		out.writeShort(0); // interfaces
+		out.writeShort(0); // fields
+		out.writeShort(2); // methods
+		writeMethod(out, 0x0001, initName, initDescriptor, code, 1, 1, init.toByteArray());
+		// stack: pojo, a long or double value, or this, rs, index, pojo
+		writeMethod(out, 0x0001, handleName, handleDescriptor, code, 4, 3, handle.toByteArray());
+		out.writeShort(0); // attributes
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static void writeMethod(DataOutputStream out, int access, int name, int descriptor, int codeAttribute,
+			int maxStack, int maxLocals, byte[] code) throws IOException {
+		out.writeShort(access);
+		out.writeShort(name);
+		out.writeShort(descriptor);
+		out.writeShort(1); // attributes
+		out.writeShort(codeAttribute);
+		out.writeInt(12 + code.length);
+		out.writeShort(maxStack);
+		out.writeShort(maxLocals);
+		out.writeInt(code.length);
+		out.write(code);
+		out.writeShort(0); // exception table
+		out.writeShort(0); // attributes
+	}
+
+	private static void writeRef(ByteArrayOutputStream code, int opcode, int index) {
+		code.write(opcode);
+		code.write(index >> 8);
+		code.write(index);
+	}
+
+	private static void pushInt(ByteArrayOutputStream code, int value) {
+		if (value <= 5) {
+			code.write(0x03 + value); // iconst_<n>
+		} else if (value <= Byte.MAX_VALUE) {
+			code.write(0x10); // bipush
+			code.write(value);
+		} else {
+			code.write(0x11); // sipush
+			code.write(value >> 8);
+			code.write(value);
+		}
+	}
+
+	private static String descriptor(Class<?> type) {
+		if (type == int.class) {
+			return "I";
+		}
+		if (type == long.class) {
+			return "J";
+		}
+		if (type == double.class) {
+			return "D";
+		}
+		if (type == float.class) {
+			return "F";
+		}
+		return "L" + type.getName().replace('.', '/') + ";";
+	}
+
+	private static final class ConstantPool {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+		private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+		private int count = 1;
+
+		int utf8(String value) throws IOException {
+			String key = "U" + value;
+			Integer index = indexes.get(key);
+			if (index == null) {
+				out.writeByte(1);
+				out.writeUTF(value);
+				index = add(key);
+			}
+			return index;
+		}
+
+		int classRef(String internalName) throws IOException {
+			String key = "C" + internalName;
+			Integer index = indexes.get(key);
+			if (index == null) {
+				int name = utf8(internalName);
+				out.writeByte(7);
+				out.writeShort(name);
+				index = add(key);
+			}
+			return index;
+		}
+
+		int fieldRef(String owner, String name, String descriptor) throws IOException {
+			return memberRef(9, owner, name, descriptor);
+		}
+
+		int methodRef(String owner, String name, String descriptor) throws IOException {
+			return memberRef(10, owner, name, descriptor);
+		}
+
+		int interfaceMethodRef(String owner, String name, String descriptor) throws IOException {
+			return memberRef(11, owner, name, descriptor);
+		}
+
+		private int memberRef(int tag, String owner, String name, String descriptor) throws IOException {
+			String key = tag + owner + '.' + name + descriptor;
+			Integer index = indexes.get(key);
+			if (index == null) {
+				int ownerIndex = classRef(owner);
+				int nameAndType = nameAndType(name, descriptor);
+				out.writeByte(tag);
+				out.writeShort(ownerIndex);
+				out.writeShort(nameAndType);
+				index = add(key);
+			}
+			return index;
+		}
+
+		private int nameAndType(String name, String descriptor) throws IOException {
+			String key = "N" + name + ':' + descriptor;
+			Integer index = indexes.get(key);
+			if (index == null) {
+				int nameIndex = utf8(name);
+				int descriptorIndex = utf8(descriptor);
+				out.writeByte(12);
+				out.writeShort(nameIndex);
+				out.writeShort(descriptorIndex);
+				index = add(key);
+			}
+			return index;
+		}
+
+		private int add(String key) {
+			int index = count++;
+			indexes.put(key, index);
+			return index;
+		}
+
+		void writeTo(DataOutputStream target) throws IOException {
+			out.flush();
+			target.writeShort(count);
+			bytes.writeTo(target);
+		}
+	}
+
+	/**
+	 * Resolves the POJO and its classes through the POJO's class loader, and the handler base class
+	 * to the one of this library, which that loader may not see.
+	 */
+	private static final class Loader extends ClassLoader {
+		Loader(ClassLoader parent) {
+			super(parent);
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (name.equals(FusedResultSetHandler.class.getName())) {
+				return FusedResultSetHandler.class;
+			}
+			return super.loadClass(name, resolve);
+		}
+
+		Class<?> define(String name, byte[] code) {
+			return defineClass(name, code, 0, code.length);
+		}
+	}
+}
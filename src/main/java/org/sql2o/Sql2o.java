@@ -8,6 +8,8 @@ import javax.sql.DataSource;
 
 import org.sql2o.quirks.Quirks;
 import org.sql2o.quirks.QuirksDetector;
+import org.sql2o.quirks.parameterparsing.ParsedSqlCache;
+import org.sql2o.tools.FingerprintCache;
 
 /**
  * Sql2o is the main class for the sql2o library.
@@ -28,6 +30,8 @@ public class Sql2o {
     private final DataSource dataSource;
     private Map<String, String> defaultColumnMappings;
     private boolean defaultCaseSensitive;
+    private final ParsedSqlCache parsedSqlCache = new ParsedSqlCache();
+    private final FingerprintCache<Object, Object> resultSetCache = new FingerprintCache<Object, Object>();
     
     public Sql2o(String jndiLookup) {
         this(JndiDataSource.getJndiDatasource(jndiLookup));
@@ -79,6 +83,22 @@ public class Sql2o {
         return quirks;
     }
 
+    /**
+     * Gets the cache of parsed statements shared by every query of this instance. Its hit rate tells
+     * how often a query skipped parsing its named parameters.
+     */
+    public ParsedSqlCache getParsedSqlCache() {
+        return parsedSqlCache;
+    }
+
+    /**
+     * Gets what the queries of this instance derived from the columns of their result sets, such as
+     * the handler that maps a row to a POJO, keyed by the SQL text and checked against the columns.
+     */
+    public FingerprintCache<Object, Object> getResultSetCache() {
+        return resultSetCache;
+    }
+
      /**
      * Gets the DataSource that Sql2o uses internally to acquire database connections.
      * @return  The DataSource instance
@@ -132,6 +152,16 @@ public class Sql2o {
         return new Connection(this, false);
     }
 
+    /**
+     * Opens a connection that borrows a JDBC connection from the data source only when its first
+     * statement executes, and gives it back as soon as an update completes or a result set is
+     * fully read. Starting a transaction on the JDBC connection keeps it until commit or rollback.
+     * @return instance of the {@link org.sql2o.Connection} class.
+     */
+    public Connection openLazy() {
+        return new Connection(this, false, true);
+    }
+
     /**
      * Invokes the run method on the {@link org.sql2o.StatementRunnableWithResult} instance. This method guarantees that
      * the connection is closed properly, when either the run method completes or if an exception occurs.
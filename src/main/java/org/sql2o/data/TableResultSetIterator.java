@@ -3,6 +3,7 @@ package org.sql2o.data;
 import org.sql2o.ResultSetIteratorBase;
 import org.sql2o.Sql2oException;
 import org.sql2o.quirks.Quirks;
+import org.sql2o.tools.FingerprintCache;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -15,8 +16,40 @@ public class TableResultSetIterator extends ResultSetIteratorBase<Row> {
     private Map<String, Integer> columnNameToIdxMap;
     private List<Column> columns;
 
+    /**
+     * Reuses the columns found by an earlier execution of the same SQL on the same Sql2o, as long as
+     * the result set has the same column labels and types.
+     */
+    public TableResultSetIterator(ResultSet rs, boolean isCaseSensitive, Quirks quirks, LazyTable lt, String sql,
+                                  FingerprintCache<Object, Object> cache) {
+        super(rs, isCaseSensitive, quirks);
+
+        LayoutKey key = new LayoutKey(sql, isCaseSensitive, quirks);
+        String fingerprint;
+        try {
+            fingerprint = FingerprintCache.fingerprint(quirks, meta);
+        }
+        catch (SQLException e) {
+            throw new Sql2oException("Error while reading metadata from database", e);
+        }
+        Layout layout = (Layout) cache.get(key, fingerprint);
+        if (layout == null) {
+            readColumns(lt);
+            layout = new Layout(lt.getName(), columns, columnNameToIdxMap);
+            cache.put(key, fingerprint, layout);
+        }
+        this.columns = layout.columns;
+        this.columnNameToIdxMap = layout.columnNameToIdxMap;
+        lt.setName(layout.tableName);
+        lt.setColumns(columns);
+    }
+
     public TableResultSetIterator(ResultSet rs, boolean isCaseSensitive, Quirks quirks, LazyTable lt) {
         super(rs, isCaseSensitive, quirks);
+        readColumns(lt);
+    }
+
+    private void readColumns(LazyTable lt) {
 
         this.columnNameToIdxMap = new HashMap<String, Integer>();
         this.columns = new ArrayList<Column>();
@@ -40,6 +73,47 @@ public class TableResultSetIterator extends ResultSetIteratorBase<Row> {
         lt.setColumns(columns);
     }
 
+    private static final class LayoutKey {
+        final String sql;
+        final boolean isCaseSensitive;
+        final Quirks quirks;
+
+        LayoutKey(String sql, boolean isCaseSensitive, Quirks quirks) {
+            this.sql = sql;
+            this.isCaseSensitive = isCaseSensitive;
+            this.quirks = quirks;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof LayoutKey)) {
+                return false;
+            }
+            LayoutKey key = (LayoutKey) o;
+            return isCaseSensitive == key.isCaseSensitive && quirks == key.quirks && sql.equals(key.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * sql.hashCode() + (isCaseSensitive ? 1 : 0);
+        }
+    }
+
+    /**
+     * Columns of a result set, shared by every table read with the same SQL and so never modified.
+     */
+    private static final class Layout {
+        final String tableName;
+        final List<Column> columns;
+        final Map<String, Integer> columnNameToIdxMap;
+
+        Layout(String tableName, List<Column> columns, Map<String, Integer> columnNameToIdxMap) {
+            this.tableName = tableName;
+            this.columns = Collections.unmodifiableList(columns);
+            this.columnNameToIdxMap = columnNameToIdxMap;
+        }
+    }
+
     @Override
     protected Row readNext() throws SQLException {
         Row row = new Row(columnNameToIdxMap, columns.size(), isCaseSensitive,this.quirks);
@@ -0,0 +1,80 @@
+package org.sql2o.quirks.parameterparsing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of parsing a statement with named parameters: the JDBC statement text with every
+ * parameter replaced by '?', and the indexes each parameter name was found at. Both are immutable
+ * so that one instance can be shared by every query created from the same statement.
+ */
+public final class ParsedSql {
+
+    private final String sql;
+    private final Map<String, List<Integer>> parameterIndexes;
+    private final int[][] positionalIndexes;
+
+    public ParsedSql(String sql, Map<String, List<Integer>> parameterIndexes) {
+        this.sql = sql;
+        Map<String, List<Integer>> copy = new HashMap<String, List<Integer>>(parameterIndexes.size() * 2);
+        for (Map.Entry<String, List<Integer>> entry : parameterIndexes.entrySet()) {
+            copy.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<Integer>(entry.getValue())));
+        }
+        this.parameterIndexes = Collections.unmodifiableMap(copy);
+        this.positionalIndexes = positionalIndexes(copy);
+    }
+
+    /**
+     * Indexes of the parameters named p1 to pN, the names positional binding uses, by position.
+     */
+    private static int[][] positionalIndexes(Map<String, List<Integer>> parameterIndexes) {
+        int[][] indexes = new int[parameterIndexes.size()][];
+        for (Map.Entry<String, List<Integer>> entry : parameterIndexes.entrySet()) {
+            int position = position(entry.getKey());
+            if (position < 1 || position > indexes.length) {
+                return null;
+            }
+            List<Integer> list = entry.getValue();
+            int[] slot = new int[list.size()];
+            for (int i = 0; i < slot.length; i++) {
+                slot[i] = list.get(i);
+            }
+            indexes[position - 1] = slot;
+        }
+        return indexes;
+    }
+
+    private static int position(String name) {
+        if (name.length() < 2 || name.length() > 10 || name.charAt(0) != 'p' || name.charAt(1) == '0') {
+            return -1;
+        }
+        int position = 0;
+        for (int i = 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            position = position * 10 + (c - '0');
+        }
+        return position;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public Map<String, List<Integer>> getParameterIndexes() {
+        return parameterIndexes;
+    }
+
+    /**
+     * Returns, for every position, the JDBC indexes of parameter p&lt;position+1&gt;, or null unless
+     * the statement names its parameters p1 to pN without gaps. Shared; must not be modified.
+     */
+    public int[][] getPositionalIndexes() {
+        return positionalIndexes;
+    }
+}
@@ -0,0 +1,100 @@
+package org.sql2o.quirks.parameterparsing;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parse results of named-parameter statements, keyed by the raw statement text, so that a statement
+ * which is executed again does not go through the {@link SqlParameterParsingStrategy} a second time.
+ * <p>
+ * Statements built with inlined literals would fill the cache without end, so it is emptied once it
+ * holds maxSize entries. Two threads missing on the same statement may both parse it; the results
+ * are equal and the last one stays.
+ */
+public class ParsedSqlCache {
+
+    public static final int DEFAULT_MAX_SIZE = 2048;
+
+    private final ConcurrentHashMap<String, ParsedSql> entries = new ConcurrentHashMap<String, ParsedSql>();
+    private final int maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ParsedSqlCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public ParsedSqlCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the parse result of a statement, parsing it with the given strategy on a miss.
+     */
+    public ParsedSql get(String sql, SqlParameterParsingStrategy strategy) {
+        ParsedSql parsed = entries.get(sql);
+        if (parsed != null) {
+            hits.incrementAndGet();
+            return parsed;
+        }
+        misses.incrementAndGet();
+
+        Map<String, List<Integer>> parameterIndexes = new HashMap<String, List<Integer>>();
+        parsed = new ParsedSql(strategy.parseSql(sql, parameterIndexes), parameterIndexes);
+        if (maxSize > 0) {
+            if (entries.size() >= maxSize) {
+                entries.clear();
+                evictions.incrementAndGet();
+            }
+            entries.put(sql, parsed);
+        }
+        return parsed;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Share of lookups answered from the cache, between 0 and 1; 0 before the first lookup.
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Times the cache was emptied because it reached maxSize.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "ParsedSqlCache{size=" + entries.size() + ", hits=" + hits.get() + ", misses=" + misses.get()
+                + ", evictions=" + evictions.get() + '}';
+    }
+}
@@ -0,0 +1,28 @@
+package org.sql2o.reflection;
+
+/**
+ * Base class of {@link PrimitiveGetter} implementations: every primitive method unboxes the result
+ * of getProperty, so an implementation only overrides the method of its own type.
+ */
+public abstract class AbstractPrimitiveGetter implements PrimitiveGetter {
+
+    public int getInt(Object obj) {
+        return ((Number) getProperty(obj)).intValue();
+    }
+
+    public long getLong(Object obj) {
+        return ((Number) getProperty(obj)).longValue();
+    }
+
+    public double getDouble(Object obj) {
+        return ((Number) getProperty(obj)).doubleValue();
+    }
+
+    public float getFloat(Object obj) {
+        return ((Number) getProperty(obj)).floatValue();
+    }
+
+    public boolean getBoolean(Object obj) {
+        return (Boolean) getProperty(obj);
+    }
+}
@@ -0,0 +1,28 @@
+package org.sql2o.reflection;
+
+/**
+ * Base class of {@link PrimitiveSetter} implementations: every primitive method boxes the value and
+ * calls setProperty, so an implementation only overrides the method of its own type.
+ */
+public abstract class AbstractPrimitiveSetter implements PrimitiveSetter {
+
+    public void setInt(Object obj, int value) {
+        setProperty(obj, value);
+    }
+
+    public void setLong(Object obj, long value) {
+        setProperty(obj, value);
+    }
+
+    public void setDouble(Object obj, double value) {
+        setProperty(obj, value);
+    }
+
+    public void setFloat(Object obj, float value) {
+        setProperty(obj, value);
+    }
+
+    public void setBoolean(Object obj, boolean value) {
+        setProperty(obj, value);
+    }
+}
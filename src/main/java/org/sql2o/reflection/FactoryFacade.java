@@ -18,8 +18,10 @@ public class FactoryFacade {
             mg = (MethodGetterFactory) m;
             o = (ObjectConstructorFactory) m;
         } catch (Throwable ex) {
-            mg = new ReflectionMethodGetterFactory();
-            m = new ReflectionMethodSetterFactory();
+            // sun.reflect is gone since JDK 9
+            MethodHandleAccessorFactory mh = newMethodHandleAccessorFactory();
+            mg = mh != null ? mh : new ReflectionMethodGetterFactory();
+            m = mh != null ? mh : new ReflectionMethodSetterFactory();
             o = null;
         }
         FieldGetterFactory fg;
@@ -31,13 +33,27 @@ public class FactoryFacade {
             f = (FieldSetterFactory) cls.newInstance();
             if(o==null) o = (ObjectConstructorFactory) f;
         } catch (Throwable ex) {
-            fg = new ReflectionFieldGetterFactory();
-            f = new ReflectionFieldSetterFactory();
-            o = new ReflectionObjectConstructorFactory();
+            MethodHandleAccessorFactory mh = newMethodHandleAccessorFactory();
+            fg = mh != null ? mh : new ReflectionFieldGetterFactory();
+            f = mh != null ? mh : new ReflectionFieldSetterFactory();
+            if (o == null) o = mh != null ? mh : new ReflectionObjectConstructorFactory();
         }
         instance = new FactoryFacade(fg, mg, f, m, o);
     }
 
+    /**
+     * @return null on a JVM without java.lang.invoke
+     */
+    private static MethodHandleAccessorFactory newMethodHandleAccessorFactory() {
+        try {
+            return (MethodHandleAccessorFactory) Class
+                    .forName("org.sql2o.reflection.MethodHandleAccessorFactory")
+                    .newInstance();
+        } catch (Throwable ex) {
+            return null;
+        }
+    }
+
     private final FieldGetterFactory fieldGetterFactory;
     private final MethodGetterFactory methodGetterFactory;
     private final FieldSetterFactory fieldSetterFactory;
@@ -9,7 +9,7 @@ import java.lang.reflect.Field;
  *
  * @author mdelapenya
  */
-public class FieldGetter implements Getter {
+public class FieldGetter extends AbstractPrimitiveGetter {
 
     private Field field;
 
@@ -26,6 +26,51 @@ public class FieldGetter implements Getter {
         }
     }
 
+    @Override
+    public int getInt(Object obj) {
+        try {
+            return this.field.getInt(obj);
+        } catch (IllegalAccessException e) {
+            throw new Sql2oException("could not get field " + this.field.getName() + " on class " + obj.getClass().toString(), e);
+        }
+    }
+
+    @Override
+    public long getLong(Object obj) {
+        try {
+            return this.field.getLong(obj);
+        } catch (IllegalAccessException e) {
+            throw new Sql2oException("could not get field " + this.field.getName() + " on class " + obj.getClass().toString(), e);
+        }
+    }
+
+    @Override
+    public double getDouble(Object obj) {
+        try {
+            return this.field.getDouble(obj);
+        } catch (IllegalAccessException e) {
+            throw new Sql2oException("could not get field " + this.field.getName() + " on class " + obj.getClass().toString(), e);
+        }
+    }
+
+    @Override
+    public float getFloat(Object obj) {
+        try {
+            return this.field.getFloat(obj);
+        } catch (IllegalAccessException e) {
+            throw new Sql2oException("could not get field " + this.field.getName() + " on class " + obj.getClass().toString(), e);
+        }
+    }
+
+    @Override
+    public boolean getBoolean(Object obj) {
+        try {
+            return this.field.getBoolean(obj);
+        } catch (IllegalAccessException e) {
+            throw new Sql2oException("could not get field " + this.field.getName() + " on class " + obj.getClass().toString(), e);
+        }
+    }
+
     public Class getType() {
         return field.getType();
     }
@@ -7,7 +7,7 @@ import java.lang.reflect.Field;
 /**
  * used internally to set property values directly into the field. Only used if no setter method is found.
  */
-public class FieldSetter implements Setter{
+public class FieldSetter extends AbstractPrimitiveSetter {
 
     private Field field;
 
@@ -28,6 +28,51 @@ public class FieldSetter implements Setter{
         }
     }
 
+    @Override
+    public void setInt(Object obj, int value) {
+        try {
+            this.field.setInt(obj, value);
+        } catch (IllegalAccessException e) {
+            throw new Sql2oException("could not set field " + this.field.getName() + " on class " + obj.getClass().toString(), e);
+        }
+    }
+
+    @Override
+    public void setLong(Object obj, long value) {
+        try {
+            this.field.setLong(obj, value);
+        } catch (IllegalAccessException e) {
+            throw new Sql2oException("could not set field " + this.field.getName() + " on class " + obj.getClass().toString(), e);
+        }
+    }
+
+    @Override
+    public void setDouble(Object obj, double value) {
+        try {
+            this.field.setDouble(obj, value);
+        } catch (IllegalAccessException e) {
+            throw new Sql2oException("could not set field " + this.field.getName() + " on class " + obj.getClass().toString(), e);
+        }
+    }
+
+    @Override
+    public void setFloat(Object obj, float value) {
+        try {
+            this.field.setFloat(obj, value);
+        } catch (IllegalAccessException e) {
+            throw new Sql2oException("could not set field " + this.field.getName() + " on class " + obj.getClass().toString(), e);
+        }
+    }
+
+    @Override
+    public void setBoolean(Object obj, boolean value) {
+        try {
+            this.field.setBoolean(obj, value);
+        } catch (IllegalAccessException e) {
+            throw new Sql2oException("could not set field " + this.field.getName() + " on class " + obj.getClass().toString(), e);
+        }
+    }
+
     public Class getType() {
         return field.getType();
     }
@@ -0,0 +1,291 @@
+package org.sql2o.reflection;
+
+import org.sql2o.Sql2oException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Builds accessors from {@link MethodHandle}s. They need neither sun.reflect nor sun.misc.Unsafe, so
+ * they work on every JDK since 7, and unlike {@link Method#invoke} they take primitive values
+ * without boxing them. Each handle is adapted once to an exact (Object, ...) type so that every call
+ * is an invokeExact the JIT can inline through.
+ */
+public class MethodHandleAccessorFactory implements MethodGetterFactory, MethodSetterFactory,
+        FieldGetterFactory, FieldSetterFactory, ObjectConstructorFactory {
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    public Getter newGetter(Method method) {
+        if (method.getParameterTypes().length != 0 || Modifier.isStatic(method.getModifiers())) {
+            // not a getter after all; keep failing when it is called, as reflection does
+            return new MethodGetter(method);
+        }
+        method.setAccessible(true);
+        try {
+            return newGetter(lookup.unreflect(method), method.getReturnType(),
+                    "error while calling getter method with name " + method.getName());
+        } catch (IllegalAccessException e) {
+            throw new Sql2oException("could not access getter method with name " + method.getName(), e);
+        }
+    }
+
+    public Getter newGetter(Field field) {
+        field.setAccessible(true);
+        try {
+            return newGetter(instanceAccessor(field, lookup.unreflectGetter(field)), field.getType(), "could not get field " + field.getName());
+        } catch (IllegalAccessException e) {
+            throw new Sql2oException("could not access field " + field.getName(), e);
+        }
+    }
+
+    public Setter newSetter(Method method) {
+        if (method.getParameterTypes().length != 1 || Modifier.isStatic(method.getModifiers())) {
+            return new MethodSetter(method);
+        }
+        method.setAccessible(true);
+        try {
+            return newSetter(lookup.unreflect(method), method.getParameterTypes()[0],
+                    "error while calling setter method with name " + method.getName());
+        } catch (IllegalAccessException e) {
+            throw new Sql2oException("could not access setter method with name " + method.getName(), e);
+        }
+    }
+
+    public Setter newSetter(Field field) {
+        field.setAccessible(true);
+        try {
+            return newSetter(instanceAccessor(field, lookup.unreflectSetter(field)), field.getType(), "could not set field " + field.getName());
+        } catch (IllegalAccessException e) {
+            // a final field; reflection can still write it
+            return new FieldSetter(field);
+        }
+    }
+
+    public ObjectConstructor newConstructor(final Class<?> clazz) {
+        final MethodHandle handle;
+        try {
+            Constructor<?> ctor = clazz.getDeclaredConstructor();
+            ctor.setAccessible(true);
+            handle = lookup.unreflectConstructor(ctor).asType(MethodType.methodType(Object.class));
+        } catch (Throwable e) {
+            throw new Sql2oException("Could not find parameter-less constructor of class " + clazz, e);
+        }
+        return new ObjectConstructor() {
+            public Object newInstance() {
+                try {
+                    return (Object) handle.invokeExact();
+                } catch (Throwable e) {
+                    throw new Sql2oException("Could not create a new instance of class " + clazz, e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Lets the accessor of a static field take, and ignore, an object like those of instance fields.
+     */
+    private static MethodHandle instanceAccessor(Field field, MethodHandle handle) {
+        return Modifier.isStatic(field.getModifiers()) ? MethodHandles.dropArguments(handle, 0, Object.class) : handle;
+    }
+
+    private static Getter newGetter(MethodHandle handle, final Class<?> type, String failure) {
+        MethodHandle generic = handle.asType(MethodType.methodType(Object.class, Object.class));
+        if (type.isPrimitive()) {
+            final MethodHandle primitive = handle.asType(MethodType.methodType(type, Object.class));
+            if (type == Integer.TYPE) {
+                return new HandleGetter(generic, type, failure) {
+                    @Override
+                    public int getInt(Object obj) {
+                        try {
+                            return (int) primitive.invokeExact(obj);
+                        } catch (Throwable e) {
+                            throw failure(obj, e);
+                        }
+                    }
+                };
+            }
+            if (type == Long.TYPE) {
+                return new HandleGetter(generic, type, failure) {
+                    @Override
+                    public long getLong(Object obj) {
+                        try {
+                            return (long) primitive.invokeExact(obj);
+                        } catch (Throwable e) {
+                            throw failure(obj, e);
+                        }
+                    }
+                };
+            }
+            if (type == Double.TYPE) {
+                return new HandleGetter(generic, type, failure) {
+                    @Override
+                    public double getDouble(Object obj) {
+                        try {
+                            return (double) primitive.invokeExact(obj);
+                        } catch (Throwable e) {
+                            throw failure(obj, e);
+                        }
+                    }
+                };
+            }
+            if (type == Float.TYPE) {
+                return new HandleGetter(generic, type, failure) {
+                    @Override
+                    public float getFloat(Object obj) {
+                        try {
+                            return (float) primitive.invokeExact(obj);
+                        } catch (Throwable e) {
+                            throw failure(obj, e);
+                        }
+                    }
+                };
+            }
+            if (type == Boolean.TYPE) {
+                return new HandleGetter(generic, type, failure) {
+                    @Override
+                    public boolean getBoolean(Object obj) {
+                        try {
+                            return (boolean) primitive.invokeExact(obj);
+                        } catch (Throwable e) {
+                            throw failure(obj, e);
+                        }
+                    }
+                };
+            }
+        }
+        return new HandleGetter(generic, type, failure);
+    }
+
+    private static Setter newSetter(MethodHandle handle, final Class<?> type, String failure) {
+        MethodHandle generic = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        if (type.isPrimitive()) {
+            final MethodHandle primitive = handle.asType(MethodType.methodType(void.class, Object.class, type));
+            if (type == Integer.TYPE) {
+                return new HandleSetter(generic, type, failure) {
+                    @Override
+                    public void setInt(Object obj, int value) {
+                        try {
+                            primitive.invokeExact(obj, value);
+                        } catch (Throwable e) {
+                            throw failure(obj, e);
+                        }
+                    }
+                };
+            }
+            if (type == Long.TYPE) {
+                return new HandleSetter(generic, type, failure) {
+                    @Override
+                    public void setLong(Object obj, long value) {
+                        try {
+                            primitive.invokeExact(obj, value);
+                        } catch (Throwable e) {
+                            throw failure(obj, e);
+                        }
+                    }
+                };
+            }
+            if (type == Double.TYPE) {
+                return new HandleSetter(generic, type, failure) {
+                    @Override
+                    public void setDouble(Object obj, double value) {
+                        try {
+                            primitive.invokeExact(obj, value);
+                        } catch (Throwable e) {
+                            throw failure(obj, e);
+                        }
+                    }
+                };
+            }
+            if (type == Float.TYPE) {
+                return new HandleSetter(generic, type, failure) {
+                    @Override
+                    public void setFloat(Object obj, float value) {
+                        try {
+                            primitive.invokeExact(obj, value);
+                        } catch (Throwable e) {
+                            throw failure(obj, e);
+                        }
+                    }
+                };
+            }
+            if (type == Boolean.TYPE) {
+                return new HandleSetter(generic, type, failure) {
+                    @Override
+                    public void setBoolean(Object obj, boolean value) {
+                        try {
+                            primitive.invokeExact(obj, value);
+                        } catch (Throwable e) {
+                            throw failure(obj, e);
+                        }
+                    }
+                };
+            }
+        }
+        return new HandleSetter(generic, type, failure);
+    }
+
+    private static class HandleGetter extends AbstractPrimitiveGetter {
+        private final MethodHandle handle;
+        private final Class<?> type;
+        private final String failure;
+
+        HandleGetter(MethodHandle handle, Class<?> type, String failure) {
+            this.handle = handle;
+            this.type = type;
+            this.failure = failure;
+        }
+
+        public Object getProperty(Object obj) {
+            try {
+                return (Object) handle.invokeExact(obj);
+            } catch (Throwable e) {
+                throw failure(obj, e);
+            }
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+
+        Sql2oException failure(Object obj, Throwable e) {
+            return new Sql2oException(failure + " on class " + obj.getClass().toString(), e);
+        }
+    }
+
+    private static class HandleSetter extends AbstractPrimitiveSetter {
+        private final MethodHandle handle;
+        private final Class<?> type;
+        private final String failure;
+
+        HandleSetter(MethodHandle handle, Class<?> type, String failure) {
+            this.handle = handle;
+            this.type = type;
+            this.failure = failure;
+        }
+
+        public void setProperty(Object obj, Object value) {
+            if (value == null && type.isPrimitive()) {
+                return; // dont try to set null to a primitive type.
+            }
+            try {
+                handle.invokeExact(obj, value);
+            } catch (Throwable e) {
+                throw failure(obj, e);
+            }
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+
+        Sql2oException failure(Object obj, Throwable e) {
+            return new Sql2oException(failure + " on class " + obj.getClass().toString(), e);
+        }
+    }
+}
@@ -137,6 +137,7 @@ public class PojoMetadata {
                     }
 
                     propertySetters.put(propertyName, factoryFacade.newSetter(m));
+                    fields.remove(propertyName);
                 }
             }
             theClass = theClass.getSuperclass();
@@ -166,19 +167,7 @@ public class PojoMetadata {
     }
 
     public Getter getPropertyGetterIfExists(String propertyName) {
-
-        String name = this.caseSensitive ? propertyName : propertyName.toLowerCase();
-
-        if (this.columnMappings.containsKey(name)) {
-            name = this.columnMappings.get(name);
-        }
-
-        if (autoDeriveColumnNames) {
-            name = UnderscoreToCamelCase.convert(name);
-            if (!this.caseSensitive) name = name.toLowerCase();
-        }
-
-        return propertyInfo.propertyGetters.get(name);
+        return propertyInfo.propertyGetters.get(propertyKey(propertyName));
     }
 
     public Setter getPropertySetter(String propertyName) {
@@ -197,7 +186,18 @@ public class PojoMetadata {
     }
 
     public Setter getPropertySetterIfExists(String propertyName) {
+        return propertyInfo.propertySetters.get(propertyKey(propertyName));
+    }
 
+    /**
+     * Returns the field the setter of a property writes directly, or null if the property is set
+     * through a method or does not exist.
+     */
+    public Field getPropertyFieldIfExists(String propertyName) {
+        return propertyInfo.fields.get(propertyKey(propertyName));
+    }
+
+    private String propertyKey(String propertyName) {
         String name = this.caseSensitive ? propertyName : propertyName.toLowerCase();
 
         if (this.columnMappings.containsKey(name)) {
@@ -208,8 +208,7 @@ public class PojoMetadata {
             name = UnderscoreToCamelCase.convert(name);
             if (!this.caseSensitive) name = name.toLowerCase();
         }
-
-        return propertyInfo.propertySetters.get(name);
+        return name;
     }
 
     public Class<?> getType() {
@@ -248,7 +247,7 @@ public class PojoMetadata {
         // to make HotSpot a little less work for inlining
         public final Map<String, Getter> propertyGetters;
         public final Map<String, Setter> propertySetters;
-        @SuppressWarnings("unused")
+        // fields whose property is not overridden by a setter method
 		public final Map<String, Field> fields;
         public final ObjectConstructor objectConstructor;
 
@@ -0,0 +1,14 @@
+package org.sql2o.reflection;
+
+/**
+ * A {@link Getter} that can also return primitive values without boxing them. Callers use the
+ * method matching {@link #getType()}; the others may go through getProperty and unbox.
+ */
+public interface PrimitiveGetter extends Getter {
+
+    int getInt(Object obj);
+    long getLong(Object obj);
+    double getDouble(Object obj);
+    float getFloat(Object obj);
+    boolean getBoolean(Object obj);
+}
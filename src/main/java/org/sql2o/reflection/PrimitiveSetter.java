@@ -0,0 +1,14 @@
+package org.sql2o.reflection;
+
+/**
+ * A {@link Setter} that can also take primitive values without boxing them. Callers use the method
+ * matching {@link #getType()}; the others may box the value and go through setProperty.
+ */
+public interface PrimitiveSetter extends Setter {
+
+    void setInt(Object obj, int value);
+    void setLong(Object obj, long value);
+    void setDouble(Object obj, double value);
+    void setFloat(Object obj, float value);
+    void setBoolean(Object obj, boolean value);
+}
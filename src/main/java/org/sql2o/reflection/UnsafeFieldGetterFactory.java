@@ -33,11 +33,16 @@ public class UnsafeFieldGetterFactory implements FieldGetterFactory, ObjectConst
 
         if (!Modifier.isVolatile(field.getModifiers())) {
             if (type == Boolean.TYPE) {
-                return new Getter() {
+                return new AbstractPrimitiveGetter() {
                     public Object getProperty(Object obj) {
                         return theUnsafe.getBoolean(obj, offset);
                     }
 
+                    @Override
+                    public boolean getBoolean(Object obj) {
+                        return theUnsafe.getBoolean(obj, offset);
+                    }
+
                     public Class getType() {
                         return Boolean.TYPE;
                     }
@@ -81,11 +86,16 @@ public class UnsafeFieldGetterFactory implements FieldGetterFactory, ObjectConst
             }
 
             if (type == Integer.TYPE) {
-                return new Getter() {
+                return new AbstractPrimitiveGetter() {
                     public Object getProperty(Object obj) {
                         return theUnsafe.getInt(obj, offset);
                     }
 
+                    @Override
+                    public int getInt(Object obj) {
+                        return theUnsafe.getInt(obj, offset);
+                    }
+
                     public Class getType() {
                         return Integer.TYPE;
                     }
@@ -93,11 +103,16 @@ public class UnsafeFieldGetterFactory implements FieldGetterFactory, ObjectConst
             }
 
             if (type == Long.TYPE) {
-                return new Getter() {
+                return new AbstractPrimitiveGetter() {
                     public Object getProperty(Object obj) {
                         return theUnsafe.getLong(obj, offset);
                     }
 
+                    @Override
+                    public long getLong(Object obj) {
+                        return theUnsafe.getLong(obj, offset);
+                    }
+
                     public Class getType() {
                         return Long.TYPE;
                     }
@@ -105,22 +120,32 @@ public class UnsafeFieldGetterFactory implements FieldGetterFactory, ObjectConst
             }
 
             if (type == Float.TYPE) {
-                return new Getter() {
+                return new AbstractPrimitiveGetter() {
                     public Object getProperty(Object obj) {
                         return theUnsafe.getFloat(obj, offset);
                     }
 
+                    @Override
+                    public float getFloat(Object obj) {
+                        return theUnsafe.getFloat(obj, offset);
+                    }
+
                     public Class getType() {
                         return Float.TYPE;
                     }
                 };
             }
             if (type == Double.TYPE) {
-                return new Getter() {
+                return new AbstractPrimitiveGetter() {
                     public Object getProperty(Object obj) {
                         return theUnsafe.getDouble(obj, offset);
                     }
 
+                    @Override
+                    public double getDouble(Object obj) {
+                        return theUnsafe.getDouble(obj, offset);
+                    }
+
                     public Class getType() {
                         return Double.TYPE;
                     }
@@ -138,11 +163,16 @@ public class UnsafeFieldGetterFactory implements FieldGetterFactory, ObjectConst
         }
 
         if (type == Boolean.TYPE) {
-            return new Getter() {
+            return new AbstractPrimitiveGetter() {
                 public Object getProperty(Object obj) {
                     return theUnsafe.getBooleanVolatile(obj, offset);
                 }
 
+                @Override
+                public boolean getBoolean(Object obj) {
+                    return theUnsafe.getBooleanVolatile(obj, offset);
+                }
+
                 public Class getType() {
                     return Boolean.TYPE;
                 }
@@ -182,44 +212,64 @@ public class UnsafeFieldGetterFactory implements FieldGetterFactory, ObjectConst
             };
         }
         if (type == Integer.TYPE) {
-            return new Getter() {
+            return new AbstractPrimitiveGetter() {
                 public Object getProperty(Object obj) {
                     return theUnsafe.getIntVolatile(obj, offset);
                 }
 
+                @Override
+                public int getInt(Object obj) {
+                    return theUnsafe.getIntVolatile(obj, offset);
+                }
+
                 public Class getType() {
                     return Integer.TYPE;
                 }
             };
         }
         if (type == Long.TYPE) {
-            return new Getter() {
+            return new AbstractPrimitiveGetter() {
                 public Object getProperty(Object obj) {
                     return theUnsafe.getLongVolatile(obj, offset);
                 }
 
+                @Override
+                public long getLong(Object obj) {
+                    return theUnsafe.getLongVolatile(obj, offset);
+                }
+
                 public Class getType() {
                     return Long.TYPE;
                 }
             };
         }
         if (type == Float.TYPE) {
-            return new Getter() {
+            return new AbstractPrimitiveGetter() {
                 public Object getProperty(Object obj) {
                     return theUnsafe.getFloatVolatile(obj, offset);
                 }
 
+                @Override
+                public float getFloat(Object obj) {
+                    return theUnsafe.getFloatVolatile(obj, offset);
+                }
+
                 public Class getType() {
                     return Float.TYPE;
                 }
             };
         }
         if (type == Double.TYPE) {
-            return new Getter() {
+            return new AbstractPrimitiveGetter() {
                 public Object getProperty(Object obj) {
                     return theUnsafe.getDoubleVolatile(obj, offset);
                 }
 
+                @Override
+                public double getDouble(Object obj) {
+                    return theUnsafe.getDoubleVolatile(obj, offset);
+                }
+
                 public Class getType() {
                     return Double.TYPE;
                 }
@@ -30,12 +30,17 @@ public class UnsafeFieldSetterFactory implements FieldSetterFactory, ObjectConst
 
         if (!Modifier.isVolatile(field.getModifiers())) {
             if (type == Boolean.TYPE) {
-                return new Setter() {
+                return new AbstractPrimitiveSetter() {
                     public void setProperty(Object obj, Object value) {
                         if (value == null) return;
                         theUnsafe.putBoolean(obj, offset, (Boolean) value);
                     }
 
+                    @Override
+                    public void setBoolean(Object obj, boolean value) {
+                        theUnsafe.putBoolean(obj, offset, value);
+                    }
+
                     public Class getType() {
                         return Boolean.TYPE;
                     }
@@ -78,48 +83,68 @@ public class UnsafeFieldSetterFactory implements FieldSetterFactory, ObjectConst
                 };
             }
             if (type == Integer.TYPE) {
-                return new Setter() {
+                return new AbstractPrimitiveSetter() {
                     public void setProperty(Object obj, Object value) {
                         if (value == null) return;
                         theUnsafe.putInt(obj, offset, ((Number) value).intValue());
                     }
 
+                    @Override
+                    public void setInt(Object obj, int value) {
+                        theUnsafe.putInt(obj, offset, value);
+                    }
+
                     public Class getType() {
                         return Integer.TYPE;
                     }
                 };
             }
             if (type == Long.TYPE) {
-                return new Setter() {
+                return new AbstractPrimitiveSetter() {
                     public void setProperty(Object obj, Object value) {
                         if (value == null) return;
                         theUnsafe.putLong(obj, offset, ((Number) value).longValue());
                     }
 
+                    @Override
+                    public void setLong(Object obj, long value) {
+                        theUnsafe.putLong(obj, offset, value);
+                    }
+
                     public Class getType() {
                         return Long.TYPE;
                     }
                 };
             }
             if (type == Float.TYPE) {
-                return new Setter() {
+                return new AbstractPrimitiveSetter() {
                     public void setProperty(Object obj, Object value) {
                         if (value == null) return;
                         theUnsafe.putFloat(obj, offset, ((Number) value).floatValue());
                     }
 
+                    @Override
+                    public void setFloat(Object obj, float value) {
+                        theUnsafe.putFloat(obj, offset, value);
+                    }
+
                     public Class getType() {
                         return Float.TYPE;
                     }
                 };
             }
             if (type == Double.TYPE) {
-                return new Setter() {
+                return new AbstractPrimitiveSetter() {
                     public void setProperty(Object obj, Object value) {
                         if (value == null) return;
                         theUnsafe.putDouble(obj, offset, ((Number) value).doubleValue());
                     }
 
+                    @Override
+                    public void setDouble(Object obj, double value) {
+                        theUnsafe.putDouble(obj, offset, value);
+                    }
+
                     public Class getType() {
                         return Double.TYPE;
                     }
@@ -137,12 +162,17 @@ public class UnsafeFieldSetterFactory implements FieldSetterFactory, ObjectConst
         }
 
         if (type == Boolean.TYPE) {
-            return new Setter() {
+            return new AbstractPrimitiveSetter() {
                 public void setProperty(Object obj, Object value) {
                     if (value == null) return;
                     theUnsafe.putBooleanVolatile(obj, offset, (Boolean) value);
                 }
 
+                @Override
+                public void setBoolean(Object obj, boolean value) {
+                    theUnsafe.putBooleanVolatile(obj, offset, value);
+                }
+
                 public Class getType() {
                     return Boolean.TYPE;
                 }
@@ -185,48 +215,68 @@ public class UnsafeFieldSetterFactory implements FieldSetterFactory, ObjectConst
             };
         }
         if (type == Integer.TYPE) {
-            return new Setter() {
+            return new AbstractPrimitiveSetter() {
                 public void setProperty(Object obj, Object value) {
                     if (value == null) return;
                     theUnsafe.putIntVolatile(obj, offset, ((Number) value).intValue());
                 }
 
+                @Override
+                public void setInt(Object obj, int value) {
+                    theUnsafe.putIntVolatile(obj, offset, value);
+                }
+
                 public Class getType() {
                     return Integer.TYPE;
                 }
             };
         }
         if (type == Long.TYPE) {
-            return new Setter() {
+            return new AbstractPrimitiveSetter() {
                 public void setProperty(Object obj, Object value) {
                     if (value == null) return;
                     theUnsafe.putLongVolatile(obj, offset, ((Number) value).longValue());
                 }
 
+                @Override
+                public void setLong(Object obj, long value) {
+                    theUnsafe.putLongVolatile(obj, offset, value);
+                }
+
                 public Class getType() {
                     return Long.TYPE;
                 }
             };
         }
         if (type == Float.TYPE) {
-            return new Setter() {
+            return new AbstractPrimitiveSetter() {
                 public void setProperty(Object obj, Object value) {
                     if (value == null) return;
                     theUnsafe.putFloatVolatile(obj, offset, ((Number) value).floatValue());
                 }
 
+                @Override
+                public void setFloat(Object obj, float value) {
+                    theUnsafe.putFloatVolatile(obj, offset, value);
+                }
+
                 public Class getType() {
                     return Float.TYPE;
                 }
             };
         }
         if (type == Double.TYPE) {
-            return new Setter() {
+            return new AbstractPrimitiveSetter() {
                 public void setProperty(Object obj, Object value) {
                     if (value == null) return;
                     theUnsafe.putDoubleVolatile(obj, offset, ((Number) value).doubleValue());
                 }
 
+                @Override
+                public void setDouble(Object obj, double value) {
+                    theUnsafe.putDoubleVolatile(obj, offset, value);
+                }
+
                 public Class getType() {
                     return Double.TYPE;
                 }
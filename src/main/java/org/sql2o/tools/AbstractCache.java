@@ -34,9 +34,8 @@ public abstract class AbstractCache<K, V, E> {
 	public V get(K key, E param) {
 		V value;
 
+		rl.lock();
 		try {
-			// let's take read lock first
-			rl.lock();
 			value = map.get(key);
 		} finally {
 			rl.unlock();
@@ -44,11 +43,16 @@ public abstract class AbstractCache<K, V, E> {
 		if (value != null)
 			return value;
 
+		// evaluate outside of the lock: it may call into the JDBC driver, and a blocked evaluation
+		// must not stall every other lookup. Concurrent misses may evaluate twice, the first
+		// value stored wins.
+		V evaluated = evaluate(key, param);
+
+		wl.lock();
 		try {
-			wl.lock();
 			value = map.get(key);
 			if (value == null) {
-				value = evaluate(key, param);
+				value = evaluated;
 				map.put(key, value);
 			}
 		} finally {
@@ -0,0 +1,81 @@
+package org.sql2o.tools;
+
+import org.sql2o.quirks.Quirks;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers what was derived from the metadata of a statement's result set, keyed by the SQL text,
+ * so that the next execution can skip deriving it again. Each {@link org.sql2o.Sql2o} has its own,
+ * because the same SQL text may return other columns on another database. An entry is only trusted
+ * while the result set has the same {@link #fingerprint(Quirks, ResultSetMetaData) fingerprint},
+ * so a "select *" whose columns changed derives them again.
+ * <p>
+ * Statements built with inlined literals would fill the cache without end, so it is emptied once
+ * it holds maxSize entries.
+ */
+public class FingerprintCache<K, V> {
+
+	public static final int DEFAULT_MAX_SIZE = 4096;
+
+	private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<K, Entry<V>>();
+	private final int maxSize;
+
+	public FingerprintCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public FingerprintCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * The label and type of every column of a result set, one line each.
+	 */
+	public static String fingerprint(Quirks quirks, ResultSetMetaData meta) throws SQLException {
+		StringBuilder stringBuilder = new StringBuilder();
+		for (int i = 1; i <= meta.getColumnCount(); i++) {
+			stringBuilder.append(quirks.getColumnName(meta, i)).append(':').append(meta.getColumnType(i)).append("\n");
+		}
+		return stringBuilder.toString();
+	}
+
+	/**
+	 * @return the value stored for a result set of the given fingerprint, or null
+	 */
+	public V get(K key, String fingerprint) {
+		Entry<V> entry = entries.get(key);
+		return entry != null && entry.fingerprint.equals(fingerprint) ? entry.value : null;
+	}
+
+	public void put(K key, String fingerprint, V value) {
+		if (maxSize <= 0) {
+			return;
+		}
+		if (entries.size() >= maxSize) {
+			entries.clear();
+		}
+		entries.put(key, new Entry<V>(fingerprint, value));
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	private static final class Entry<V> {
+		final String fingerprint;
+		final V value;
+
+		Entry(String fingerprint, V value) {
+			this.fingerprint = fingerprint;
+			this.value = value;
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.blade.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.blade.jdbc.model.Person;
+
+public class OrderComparatorTest {
+
+	private static Person person(Object id, Object age, Object name) {
+		Person person = new Person();
+		person.put("id", id);
+		person.put("age", age);
+		person.put("name", name);
+		return person;
+	}
+
+	private static List<Object> ids(List<Person> persons) {
+		List<Object> ids = new ArrayList<Object>();
+		for (Person person : persons) {
+			ids.add(person.get("id"));
+		}
+		return ids;
+	}
+
+	@SafeVarargs
+	private static List<List<Person>> shards(List<Person>... shards) {
+		List<List<Person>> results = new ArrayList<List<Person>>(shards.length);
+		for (List<Person> shard : shards) {
+			results.add(shard);
+		}
+		return results;
+	}
+
+	@Test
+	public void testCompareNullsFirst() {
+		OrderComparator comparator = new OrderComparator("age");
+		assertTrue(comparator.compare(person(1, null, "a"), person(2, 20, "b")) < 0);
+		assertTrue(comparator.compare(person(1, 20, "a"), person(2, null, "b")) > 0);
+		assertEquals(0, comparator.compare(person(1, null, "a"), person(2, null, "b")));
+
+		// descending reverses the nulls with the values
+		comparator = new OrderComparator("age desc");
+		assertTrue(comparator.compare(person(1, null, "a"), person(2, 20, "b")) > 0);
+	}
+
+	@Test
+	public void testCompareMixedNumbers() {
+		OrderComparator comparator = new OrderComparator("age");
+		assertTrue(comparator.compare(person(1, 3, "a"), person(2, 20L, "b")) < 0);
+		assertTrue(comparator.compare(person(1, 2.5, "a"), person(2, 2, "b")) > 0);
+		assertEquals(0, comparator.compare(person(1, 7, "a"), person(2, 7L, "b")));
+	}
+
+	@Test
+	public void testCompareQualifiedAndCaseInsensitiveColumns() {
+		OrderComparator comparator = new OrderComparator(" p.AGE  DESC ");
+		assertTrue(comparator.compare(person(1, 30, "a"), person(2, 20, "b")) < 0);
+	}
+
+	@Test
+	public void testMergeByOneColumn() {
+		List<Person> merged = OrderComparator.merge(shards(
+				Arrays.asList(person(1, 10, "a"), person(4, 40, "d")),
+				Arrays.asList(person(2, 20, "b"), person(5, 50, "e"), person(6, 60, "f")),
+				Collections.<Person> emptyList(),
+				Arrays.asList(person(3, 30, "c"))), "age", null);
+		assertEquals(Arrays.<Object> asList(1, 2, 3, 4, 5, 6), ids(merged));
+	}
+
+	@Test
+	public void testMergeNullsFirst() {
+		List<Person> merged = OrderComparator.merge(shards(
+				Arrays.asList(person(1, null, "a"), person(3, 5, "c")),
+				Arrays.asList(person(2, null, "b"), person(4, 7, "d"))), "age", null);
+		assertEquals(Arrays.<Object> asList(1, 2, 3, 4), ids(merged));
+
+		merged = OrderComparator.merge(shards(
+				Arrays.asList(person(3, 5, "c"), person(1, null, "a")),
+				Arrays.asList(person(4, 7, "d"), person(2, null, "b"))), "age desc", null);
+		assertEquals(Arrays.<Object> asList(4, 3, 1, 2), ids(merged));
+	}
+
+	@Test
+	public void testMergeByMultipleColumns() {
+		List<Person> merged = OrderComparator.merge(shards(
+				Arrays.asList(person(1, 30, "a"), person(3, 30, "c"), person(6, 10, "b")),
+				Arrays.asList(person(2, 30, "b"), person(4, 20, "a"), person(5, 20, "z"))), "age desc, name", null);
+		assertEquals(Arrays.<Object> asList(1, 2, 3, 4, 5, 6), ids(merged));
+	}
+
+	@Test
+	public void testMergeKeepsShardOrderOfEqualRows() {
+		List<Person> merged = OrderComparator.merge(shards(
+				Arrays.asList(person(1, 10, "a"), person(3, 20, "a")),
+				Arrays.asList(person(2, 10, "a"), person(4, 20, "a"))), "age", null);
+		assertEquals(Arrays.<Object> asList(1, 2, 3, 4), ids(merged));
+	}
+
+	@Test
+	public void testMergePage() {
+		List<List<Person>> shards = shards(
+				Arrays.asList(person(1, 10, "a"), person(3, 30, "c"), person(5, 50, "e")),
+				Arrays.asList(person(2, 20, "b"), person(4, 40, "d"), person(6, 60, "f")));
+		assertEquals(Arrays.<Object> asList(3, 4), ids(OrderComparator.merge(shards, "age", new PageRow(2, 2))));
+		assertEquals(Arrays.<Object> asList(6), ids(OrderComparator.merge(shards, "age", new PageRow(5, 10))));
+		assertTrue(OrderComparator.merge(shards, "age", new PageRow(8, 2)).isEmpty());
+	}
+
+	@Test
+	public void testMergeWithoutOrderConcatenates() {
+		List<Person> merged = OrderComparator.merge(shards(
+				Arrays.asList(person(3, 30, "c"), person(1, 10, "a")),
+				Arrays.asList(person(2, 20, "b"))), null, new PageRow(1, 5));
+		assertEquals(Arrays.<Object> asList(1, 2), ids(merged));
+	}
+
+}
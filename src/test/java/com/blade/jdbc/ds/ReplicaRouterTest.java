@@ -0,0 +1,152 @@
+package com.blade.jdbc.ds;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Test;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+import org.sql2o.quirks.NoQuirks;
+
+public class ReplicaRouterTest {
+
+	/**
+	 * A data source that counts the connections it handed out; they accept every call.
+	 */
+	private static final class StubDataSource implements InvocationHandler {
+		final AtomicInteger connections = new AtomicInteger();
+
+		DataSource dataSource() {
+			return proxy(DataSource.class, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			if (method.getName().equals("getConnection")) {
+				connections.incrementAndGet();
+				return proxy(java.sql.Connection.class, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						return method.getName().equals("getAutoCommit") ? Boolean.TRUE : defaultValue(method);
+					}
+				});
+			}
+			return defaultValue(method);
+		}
+	}
+
+	/**
+	 * A probe that reports a replica as caught up once it reached the position of the token.
+	 */
+	private static final class PositionProbe implements LagProbe {
+		volatile String replicaPosition = "";
+		final AtomicInteger calls = new AtomicInteger();
+
+		@Override
+		public boolean caughtUp(int replica, DataSource dataSource, ConsistencyToken token) {
+			calls.incrementAndGet();
+			return replicaPosition.compareTo(token.getPosition()) >= 0;
+		}
+	}
+
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(ReplicaRouterTest.class.getClassLoader(), new Class<?>[] { type }, handler));
+	}
+
+	private static Object defaultValue(Method method) {
+		Class<?> type = method.getReturnType();
+		if (type == boolean.class) {
+			return Boolean.FALSE;
+		}
+		if (type == int.class) {
+			return 0;
+		}
+		if (type == long.class) {
+			return 0L;
+		}
+		return null;
+	}
+
+	private final StubDataSource primary = new StubDataSource();
+	private final StubDataSource replica = new StubDataSource();
+	private final ReplicaRouter router = new ReplicaRouter(new Sql2o(primary.dataSource(), new NoQuirks()),
+			Arrays.asList(replica.dataSource()), RoutingStrategy.ROUND_ROBIN);
+
+	@After
+	public void after() {
+		router.clearSession();
+	}
+
+	private Sql2o readTarget() {
+		Connection connection = router.openForRead();
+		try {
+			return connection.getSql2o();
+		} finally {
+			connection.close();
+		}
+	}
+
+	@Test
+	public void testReadGoesToReplica() {
+		assertSame(router.getReplicas().get(0), readTarget());
+		assertEquals(1, replica.connections.get());
+	}
+
+	@Test
+	public void testReadAfterWriteGoesToPrimary() {
+		router.recordWrite();
+		assertSame(router.getPrimary(), readTarget());
+		assertEquals(0, replica.connections.get());
+
+		router.clearSession();
+		assertSame(router.getReplicas().get(0), readTarget());
+	}
+
+	@Test
+	public void testReadGoesToReplicaAfterWindow() throws Exception {
+		router.setReadYourWritesWindow(20);
+		router.recordWrite();
+		Thread.sleep(50);
+		assertSame(router.getReplicas().get(0), readTarget());
+		assertNull(router.getSessionToken());
+	}
+
+	@Test
+	public void testLaggingReplicaSendsReadToPrimary() {
+		PositionProbe probe = new PositionProbe();
+		router.setLagProbe(probe);
+		router.recordWrite("0002");
+
+		probe.replicaPosition = "0001";
+		assertSame(router.getPrimary(), readTarget());
+		assertEquals(0, replica.connections.get());
+
+		probe.replicaPosition = "0002";
+		assertSame(router.getReplicas().get(0), readTarget());
+		assertEquals(2, probe.calls.get());
+	}
+
+	@Test
+	public void testResumedSessionReadsFromPrimary() {
+		router.recordWrite("0002");
+		ConsistencyToken token = router.getSessionToken();
+		router.clearSession();
+		assertSame(router.getReplicas().get(0), readTarget());
+
+		// the next request of the session, e.g. on another thread
+		router.resumeSession(token);
+		assertSame(router.getPrimary(), readTarget());
+		assertEquals("0002", router.getSessionToken().getPosition());
+	}
+
+}
@@ -0,0 +1,107 @@
+package com.blade.jdbc.ds;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ShardRouterTest {
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	private final ShardRouter router = new ShardRouter(new ConsistentHashStrategy(Arrays.asList("a", "b"))).setExecutor(executor);
+
+	@After
+	public void after() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testResultsInTaskOrder() {
+		List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+		for (int i = 0; i < 6; i++) {
+			final int value = i;
+			tasks.add(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					// later tasks finish first
+					Thread.sleep(5 * (6 - value));
+					return value;
+				}
+			});
+		}
+		assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), router.invokeAll(tasks));
+	}
+
+	@Test
+	public void testFailureWaitsForRunningTasks() {
+		final RuntimeException failure = new IllegalStateException("shard down");
+		final AtomicBoolean finished = new AtomicBoolean();
+		final AtomicInteger started = new AtomicInteger();
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		tasks.add(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				// fail once the other task is running
+				while (started.get() == 0) {
+					Thread.sleep(1);
+				}
+				throw failure;
+			}
+		});
+		tasks.add(new Callable<Object>() {
+			@Override
+			public Object call() {
+				started.incrementAndGet();
+				// like a JDBC call, ignores the interrupt
+				long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+				while (System.nanoTime() < end) {
+					Thread.yield();
+				}
+				finished.set(true);
+				return null;
+			}
+		});
+		try {
+			router.invokeAll(tasks);
+			fail("the failure of a task should be rethrown");
+		} catch (IllegalStateException e) {
+			assertSame(failure, e);
+		}
+		assertTrue("invokeAll returned while a task still ran", finished.get());
+	}
+
+	@Test
+	public void testRejectedTasksDoNotBlock() {
+		executor.shutdown();
+		List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+		for (int i = 0; i < 3; i++) {
+			tasks.add(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					return 1;
+				}
+			});
+		}
+		try {
+			router.invokeAll(tasks);
+			fail("a rejected task should fail the call");
+		} catch (RuntimeException e) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,159 @@
+package com.blade.jdbc.ds;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ShardStrategyTest {
+
+	private static final List<String> SHARDS = Arrays.asList("db0", "db1", "db2", "db3");
+
+	@Test
+	public void testConsistentHashIsStable() {
+		ConsistentHashStrategy strategy = new ConsistentHashStrategy(SHARDS);
+		ConsistentHashStrategy other = new ConsistentHashStrategy(new ArrayList<String>(SHARDS));
+		for (int key = 0; key < 1000; key++) {
+			String shard = strategy.shardFor(key);
+			assertTrue(SHARDS.contains(shard));
+			assertEquals(shard, strategy.shardFor(key));
+			assertEquals(shard, other.shardFor(key));
+			// boxed type does not matter, only the string form
+			assertEquals(shard, strategy.shardFor((long) key));
+			assertEquals(shard, strategy.shardFor(String.valueOf(key)));
+		}
+		assertEquals(SHARDS, strategy.shards());
+	}
+
+	@Test
+	public void testConsistentHashSpreadsKeys() {
+		ConsistentHashStrategy strategy = new ConsistentHashStrategy(SHARDS);
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		int keys = 10000;
+		for (int key = 0; key < keys; key++) {
+			String shard = strategy.shardFor(key);
+			Integer count = counts.get(shard);
+			counts.put(shard, null == count ? 1 : count + 1);
+		}
+		assertEquals(SHARDS.size(), counts.size());
+		for (Integer count : counts.values()) {
+			// within half of an even share
+			assertTrue(count > keys / SHARDS.size() / 2);
+		}
+	}
+
+	@Test
+	public void testConsistentHashMovesFewKeysOnAddedShard() {
+		ConsistentHashStrategy before = new ConsistentHashStrategy(SHARDS);
+		List<String> grown = new ArrayList<String>(SHARDS);
+		grown.add("db4");
+		ConsistentHashStrategy after = new ConsistentHashStrategy(grown);
+		int keys = 10000;
+		int moved = 0;
+		for (int key = 0; key < keys; key++) {
+			String shard = after.shardFor(key);
+			if (!shard.equals(before.shardFor(key))) {
+				// keys only move to the new shard
+				assertEquals("db4", shard);
+				moved++;
+			}
+		}
+		assertTrue(moved > 0 && moved < keys / 3);
+	}
+
+	@Test
+	public void testConsistentHashRejectsBadArguments() {
+		try {
+			new ConsistentHashStrategy(new ArrayList<String>());
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new ConsistentHashStrategy(SHARDS, 0);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new ConsistentHashStrategy(SHARDS).shardFor(null);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testRangeBoundaries() {
+		RangeShardStrategy strategy = new RangeShardStrategy()
+				.addRange(0, "db0")
+				.addRange(1000, "db1")
+				.addRange(5000L, "db2");
+		assertEquals("db0", strategy.shardFor(0));
+		assertEquals("db0", strategy.shardFor(999));
+		assertEquals("db1", strategy.shardFor(1000));
+		assertEquals("db1", strategy.shardFor(4999L));
+		assertEquals("db2", strategy.shardFor(5000));
+		assertEquals("db2", strategy.shardFor(Long.MAX_VALUE));
+		assertEquals("db1", strategy.shardFor((short) 1000));
+		assertEquals(Arrays.asList("db0", "db1", "db2"), strategy.shards());
+		try {
+			strategy.shardFor(-1);
+			fail("keys below the first bound have no shard");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testRangeOfStrings() {
+		RangeShardStrategy strategy = new RangeShardStrategy()
+				.addRange("a", "db0")
+				.addRange("n", "db1");
+		assertEquals("db0", strategy.shardFor("a"));
+		assertEquals("db0", strategy.shardFor("mzz"));
+		assertEquals("db1", strategy.shardFor("n"));
+		assertEquals("db1", strategy.shardFor("zebra"));
+	}
+
+	@Test
+	public void testRangeSharesShard() {
+		RangeShardStrategy strategy = new RangeShardStrategy()
+				.addRange(0, "db0")
+				.addRange(100, "db1")
+				.addRange(200, "db0");
+		assertEquals("db0", strategy.shardFor(250));
+		assertEquals(Arrays.asList("db0", "db1"), strategy.shards());
+	}
+
+	@Test
+	public void testRangeRejectsBadArguments() {
+		RangeShardStrategy strategy = new RangeShardStrategy().addRange(0, "db0");
+		try {
+			strategy.addRange("a", "db1");
+			fail("bounds of another type cannot be compared");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			strategy.shardFor(new Object());
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			strategy.shardFor(null);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+}
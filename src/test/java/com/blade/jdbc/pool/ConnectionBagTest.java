@@ -0,0 +1,287 @@
+package com.blade.jdbc.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class ConnectionBagTest {
+
+	private final AtomicInteger addRequests = new AtomicInteger();
+
+	private ConnectionBag newBag(boolean threadAffinity, int maxWaiters) {
+		return new ConnectionBag(threadAffinity, maxWaiters, new ConnectionBag.Listener() {
+			@Override
+			public void addBagItem(int waiting) {
+				addRequests.incrementAndGet();
+			}
+		});
+	}
+
+	private static ConnectionWrapper newConnection() {
+		return new ConnectionWrapper(null, null, System.currentTimeMillis());
+	}
+
+	/**
+	 * Starts a thread that borrows from the bag and returns once it is parked in the wait queue.
+	 */
+	private static Thread startWaiter(final ConnectionBag bag, final AtomicReference<ConnectionWrapper> result,
+			final Runnable then) throws InterruptedException {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					result.set(bag.borrow(TimeUnit.SECONDS.toNanos(10)));
+					if (then != null) {
+						then.run();
+					}
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+		int waiting = bag.getWaitingThreadCount();
+		thread.start();
+		while (bag.getWaitingThreadCount() == waiting || thread.getState() != Thread.State.TIMED_WAITING) {
+			Thread.sleep(1);
+		}
+		return thread;
+	}
+
+	@Test
+	public void testBorrowAndRequite() throws Exception {
+		ConnectionBag bag = newBag(true, -1);
+		ConnectionWrapper connection = newConnection();
+		bag.add(connection);
+		assertEquals(1, bag.getIdleCount());
+
+		assertSame(connection, bag.borrow(0));
+		assertEquals(ConnectionBag.STATE_IN_USE, connection.state);
+		assertEquals(0, bag.getIdleCount());
+		assertNull(bag.borrow(0));
+
+		assertTrue(bag.requite(connection));
+		assertEquals(1, bag.getIdleCount());
+		assertSame(connection, bag.borrow(0));
+	}
+
+	@Test
+	public void testRequiteAfterRemove() throws Exception {
+		ConnectionBag bag = newBag(true, -1);
+		ConnectionWrapper connection = newConnection();
+		bag.add(connection);
+		assertSame(connection, bag.borrow(0));
+
+		assertTrue(bag.remove(connection));
+		assertEquals(0, bag.size());
+		assertTrue(!bag.requite(connection));
+		assertNull(bag.borrow(0));
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		ConnectionBag bag = newBag(true, -1);
+		long timeout = TimeUnit.MILLISECONDS.toNanos(100);
+		long start = System.nanoTime();
+		assertNull(bag.borrow(timeout));
+		assertTrue(System.nanoTime() - start >= timeout);
+		assertEquals(1, addRequests.get());
+		assertEquals(0, bag.getWaitingThreadCount());
+
+		// a connection returned after the waiter gave up stays idle
+		ConnectionWrapper connection = newConnection();
+		bag.add(connection);
+		assertEquals(1, bag.getIdleCount());
+	}
+
+	@Test
+	public void testHandOffToWaiter() throws Exception {
+		ConnectionBag bag = newBag(true, -1);
+		AtomicReference<ConnectionWrapper> result = new AtomicReference<ConnectionWrapper>();
+		Thread waiter = startWaiter(bag, result, null);
+		assertEquals(1, addRequests.get());
+
+		ConnectionWrapper connection = newConnection();
+		bag.add(connection);
+		waiter.join(5000);
+		assertSame(connection, result.get());
+		assertEquals(ConnectionBag.STATE_IN_USE, connection.state);
+		assertEquals(0, bag.getIdleCount());
+		assertEquals(0, bag.getWaitingThreadCount());
+	}
+
+	@Test
+	public void testWaitersServedInArrivalOrder() throws Exception {
+		final ConnectionBag bag = newBag(false, -1);
+		ConnectionWrapper connection = newConnection();
+		bag.add(connection);
+		assertSame(connection, bag.borrow(0));
+
+		final List<Integer> order = new CopyOnWriteArrayList<Integer>();
+		List<Thread> waiters = new ArrayList<Thread>();
+		for (int i = 0; i < 5; i++) {
+			final int id = i;
+			final AtomicReference<ConnectionWrapper> result = new AtomicReference<ConnectionWrapper>();
+			waiters.add(startWaiter(bag, result, new Runnable() {
+				@Override
+				public void run() {
+					order.add(id);
+					bag.requite(result.get());
+				}
+			}));
+		}
+		assertEquals(5, bag.getWaitingThreadCount());
+
+		// each waiter hands the connection on to the next one as it returns it
+		bag.requite(connection);
+		for (Thread waiter : waiters) {
+			waiter.join(5000);
+		}
+		assertEquals("[0, 1, 2, 3, 4]", order.toString());
+		assertEquals(1, bag.getIdleCount());
+	}
+
+	@Test
+	public void testReturnedConnectionGoesToWaiter() throws Exception {
+		ConnectionBag bag = newBag(true, -1);
+		ConnectionWrapper connection = newConnection();
+		bag.add(connection);
+		assertSame(connection, bag.borrow(0));
+
+		AtomicReference<ConnectionWrapper> result = new AtomicReference<ConnectionWrapper>();
+		Thread waiter = startWaiter(bag, result, null);
+		bag.requite(connection);
+		waiter.join(5000);
+		assertSame(connection, result.get());
+		assertNull(bag.borrow(0));
+	}
+
+	@Test
+	public void testMaxWaitersRejection() throws Exception {
+		ConnectionBag bag = newBag(true, 1);
+		ConnectionWrapper connection = newConnection();
+		bag.add(connection);
+		assertSame(connection, bag.borrow(0));
+
+		AtomicReference<ConnectionWrapper> result = new AtomicReference<ConnectionWrapper>();
+		Thread waiter = startWaiter(bag, result, null);
+		long start = System.nanoTime();
+		try {
+			bag.borrow(TimeUnit.SECONDS.toNanos(10));
+			fail("a second waiter should be rejected");
+		} catch (SQLTransientConnectionException e) {
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+		}
+		assertEquals(1, bag.getWaitingThreadCount());
+
+		bag.requite(connection);
+		waiter.join(5000);
+		assertSame(connection, result.get());
+		assertEquals(0, bag.getWaitingThreadCount());
+	}
+
+	@Test
+	public void testCloseReleasesWaiters() throws Exception {
+		ConnectionBag bag = newBag(true, -1);
+		ConnectionWrapper busy = newConnection();
+		bag.add(busy);
+		assertSame(busy, bag.borrow(0));
+
+		AtomicReference<ConnectionWrapper> result = new AtomicReference<ConnectionWrapper>();
+		Thread waiter = startWaiter(bag, result, null);
+		assertTrue(bag.close().isEmpty());
+		waiter.join(5000);
+		assertTrue(!waiter.isAlive());
+		assertNull(result.get());
+		// connections in use are left to their borrowers
+		assertEquals(ConnectionBag.STATE_IN_USE, busy.state);
+	}
+
+	@Test
+	public void testCloseReturnsIdleConnections() throws Exception {
+		ConnectionBag bag = newBag(true, -1);
+		ConnectionWrapper idle = newConnection();
+		ConnectionWrapper busy = newConnection();
+		bag.add(idle);
+		bag.add(busy);
+		assertSame(idle, bag.borrow(0));
+		assertSame(busy, bag.borrow(0));
+		bag.requite(idle);
+
+		List<ConnectionWrapper> closed = bag.close();
+		assertEquals(1, closed.size());
+		assertSame(idle, closed.get(0));
+		assertEquals(ConnectionBag.STATE_REMOVED, idle.state);
+		assertEquals(0, bag.size());
+	}
+
+	@Test
+	public void testConcurrentBorrowAndRequite() throws Exception {
+		final ConnectionBag bag = newBag(true, -1);
+		final int connections = 3;
+		for (int i = 0; i < connections; i++) {
+			bag.add(newConnection());
+		}
+		final int threads = 8;
+		final int rounds = 20000;
+		final AtomicInteger timeouts = new AtomicInteger();
+		final AtomicInteger errors = new AtomicInteger();
+		final ConcurrentHashMap<ConnectionWrapper, Thread> owners = new ConcurrentHashMap<ConnectionWrapper, Thread>();
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Thread> workers = new ArrayList<Thread>();
+		for (int t = 0; t < threads; t++) {
+			Thread worker = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < rounds; i++) {
+							ConnectionWrapper connection = bag.borrow(TimeUnit.SECONDS.toNanos(10));
+							if (connection == null) {
+								timeouts.incrementAndGet();
+								continue;
+							}
+							// no two threads may hold the same connection
+							if (owners.putIfAbsent(connection, Thread.currentThread()) != null) {
+								errors.incrementAndGet();
+							}
+							owners.remove(connection);
+							if (!bag.requite(connection)) {
+								errors.incrementAndGet();
+							}
+						}
+					} catch (Exception e) {
+						errors.incrementAndGet();
+					}
+				}
+			});
+			worker.start();
+			workers.add(worker);
+		}
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join(60000);
+			assertTrue(!worker.isAlive());
+		}
+		assertEquals(0, errors.get());
+		assertEquals(0, timeouts.get());
+		assertEquals(connections, bag.getIdleCount());
+		assertEquals(0, bag.getWaitingThreadCount());
+		assertNotNull(bag.borrow(0));
+	}
+
+}
@@ -0,0 +1,201 @@
+package com.blade.jdbc.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StatementCacheTest {
+
+	/**
+	 * A physical statement that keeps its settings and counts how often it was closed.
+	 */
+	static final class PhysicalStatement implements InvocationHandler {
+		final Map<String, Object> settings = new HashMap<String, Object>();
+		volatile int closes;
+
+		PhysicalStatement() {
+			settings.put("MaxRows", 0);
+			settings.put("FetchSize", 0);
+			settings.put("QueryTimeout", 0);
+			settings.put("FetchDirection", ResultSet.FETCH_FORWARD);
+			settings.put("MaxFieldSize", 0);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			String name = method.getName();
+			if (name.equals("close")) {
+				closes++;
+			} else if (name.equals("isClosed")) {
+				return closes > 0;
+			} else if (name.startsWith("set") && settings.containsKey(name.substring(3))) {
+				settings.put(name.substring(3), args[0]);
+			} else if (name.startsWith("get") && settings.containsKey(name.substring(3))) {
+				return settings.get(name.substring(3));
+			}
+			return defaultValue(method);
+		}
+	}
+
+	static final List<PhysicalStatement> statements = new CopyOnWriteArrayList<PhysicalStatement>();
+
+	public static class StubDriver implements Driver {
+
+		@Override
+		public Connection connect(String url, Properties info) {
+			return (Connection) Proxy.newProxyInstance(StubDriver.class.getClassLoader(), new Class<?>[] { Connection.class },
+					new InvocationHandler() {
+						@Override
+						public Object invoke(Object proxy, Method method, Object[] args) {
+							String name = method.getName();
+							if (name.equals("prepareStatement")) {
+								PhysicalStatement statement = new PhysicalStatement();
+								statements.add(statement);
+								return Proxy.newProxyInstance(StubDriver.class.getClassLoader(),
+										new Class<?>[] { PreparedStatement.class }, statement);
+							}
+							if (name.equals("getAutoCommit") || name.equals("isValid")) {
+								return true;
+							}
+							if (name.equals("getTransactionIsolation")) {
+								return Connection.TRANSACTION_READ_COMMITTED;
+							}
+							return defaultValue(method);
+						}
+					});
+		}
+
+		@Override
+		public boolean acceptsURL(String url) {
+			return true;
+		}
+
+		@Override
+		public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+			return new DriverPropertyInfo[0];
+		}
+
+		@Override
+		public int getMajorVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getMinorVersion() {
+			return 0;
+		}
+
+		@Override
+		public boolean jdbcCompliant() {
+			return false;
+		}
+
+		@Override
+		public Logger getParentLogger() {
+			return Logger.getLogger("stub");
+		}
+	}
+
+	private static Object defaultValue(Method method) {
+		Class<?> type = method.getReturnType();
+		if (type == boolean.class) {
+			return false;
+		}
+		if (type == int.class) {
+			return 0;
+		}
+		if (type == long.class) {
+			return 0L;
+		}
+		return null;
+	}
+
+	private BasicDataSourceImpl dataSource;
+
+	@Before
+	public void before() {
+		statements.clear();
+		dataSource = new BasicDataSourceImpl("cache", StubDriver.class.getName(), "stub:", null, null,
+				new PoolConfig().setMaxSize(1).setStatementCacheSize(8));
+	}
+
+	@After
+	public void after() {
+		dataSource.close();
+	}
+
+	@Test
+	public void testSettingsDoNotCarryOver() throws Exception {
+		Connection connection = dataSource.getConnection();
+		PreparedStatement statement = connection.prepareStatement("select 1");
+		statement.setMaxRows(5);
+		statement.setFetchSize(100);
+		statement.setQueryTimeout(3);
+		statement.setFetchDirection(ResultSet.FETCH_REVERSE);
+		statement.setMaxFieldSize(64);
+		statement.close();
+		connection.close();
+
+		connection = dataSource.getConnection();
+		statement = connection.prepareStatement("select 1");
+		assertEquals("the statement is taken from the cache", 1, statements.size());
+		assertEquals(0, statement.getMaxRows());
+		assertEquals(0, statement.getFetchSize());
+		assertEquals(0, statement.getQueryTimeout());
+		assertEquals(ResultSet.FETCH_FORWARD, statement.getFetchDirection());
+		assertEquals(0, statement.getMaxFieldSize());
+		statement.close();
+		connection.close();
+	}
+
+	@Test
+	public void testUnrestorableSettingsAreNotCached() throws Exception {
+		Connection connection = dataSource.getConnection();
+		PreparedStatement statement = connection.prepareStatement("select 1");
+		statement.setEscapeProcessing(false);
+		statement.close();
+		assertEquals(1, statements.get(0).closes);
+
+		connection.prepareStatement("select 1").close();
+		assertEquals(2, statements.size());
+		connection.close();
+	}
+
+	@Test
+	public void testStatementClosedAfterItsBorrowIsNotCached() throws Exception {
+		Connection first = dataSource.getConnection();
+		PreparedStatement stale = first.prepareStatement("select 1");
+		first.close();
+
+		// the pool has one connection, the next borrow gets the same one
+		Connection second = dataSource.getConnection();
+		stale.close();
+		assertEquals(1, statements.get(0).closes);
+
+		PreparedStatement statement = second.prepareStatement("select 1");
+		assertEquals(2, statements.size());
+		statement.close();
+		assertTrue(statements.get(1).closes == 0);
+		second.close();
+	}
+
+}
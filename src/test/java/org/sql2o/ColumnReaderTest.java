@@ -0,0 +1,66 @@
+package org.sql2o;
+
+import org.junit.Test;
+import org.sql2o.converters.Converter;
+import org.sql2o.converters.DoubleConverter;
+import org.sql2o.converters.IntegerConverter;
+import org.sql2o.converters.LongConverter;
+import org.sql2o.converters.StringConverter;
+import org.sql2o.reflection.Setter;
+
+import java.sql.Types;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ColumnReaderTest {
+
+    private static Setter setter(final Class<?> type) {
+        return new Setter() {
+            @Override
+            public void setProperty(Object obj, Object value) {
+            }
+
+            @Override
+            public Class<?> getType() {
+                return type;
+            }
+        };
+    }
+
+    private static ColumnReader typed(Class<?> type, Converter<?> converter, int sqlType) {
+        return ColumnReader.typed(setter(type), converter, sqlType);
+    }
+
+    @Test
+    public void testIntegerColumnsUseTypedGetters() {
+        assertNotNull(typed(int.class, new IntegerConverter(true), Types.INTEGER));
+        assertNotNull(typed(Integer.class, new IntegerConverter(false), Types.SMALLINT));
+        assertNotNull(typed(long.class, new LongConverter(true), Types.BIGINT));
+        assertNotNull(typed(Long.class, new LongConverter(false), Types.TINYINT));
+        assertNotNull(typed(double.class, new DoubleConverter(true), Types.DOUBLE));
+        assertNotNull(typed(double.class, new DoubleConverter(true), Types.INTEGER));
+    }
+
+    @Test
+    public void testExactAndWiderColumnsKeepTheConverter() {
+        // getInt/getLong could round or reject what the converter truncates
+        assertNull(typed(int.class, new IntegerConverter(true), Types.DECIMAL));
+        assertNull(typed(long.class, new LongConverter(true), Types.NUMERIC));
+        assertNull(typed(int.class, new IntegerConverter(true), Types.DOUBLE));
+        assertNull(typed(long.class, new LongConverter(true), Types.REAL));
+        assertNull(typed(int.class, new IntegerConverter(true), Types.BIGINT));
+        assertNull(typed(double.class, new DoubleConverter(true), Types.DECIMAL));
+    }
+
+    @Test
+    public void testOtherConvertersAndColumns() {
+        // a converter registered by the application is kept
+        assertNull(typed(int.class, new LongConverter(true), Types.INTEGER));
+        assertNull(typed(int.class, new IntegerConverter(true), Types.VARCHAR));
+        assertNotNull(typed(String.class, new StringConverter(), Types.VARCHAR));
+        assertNull(typed(String.class, new StringConverter(), Types.INTEGER));
+        assertNull(ColumnReader.typed(null, new IntegerConverter(true), Types.INTEGER));
+    }
+
+}
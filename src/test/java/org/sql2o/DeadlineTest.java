@@ -0,0 +1,180 @@
+package org.sql2o;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DeadlineTest {
+
+    /**
+     * A statement that counts its cancellations; cancel() blocks until release is counted down.
+     */
+    private static final class CancelCounter implements InvocationHandler {
+        final AtomicInteger cancels = new AtomicInteger();
+        final CountDownLatch cancelling = new CountDownLatch(1);
+        final CountDownLatch release;
+        volatile int queryTimeout = -1;
+
+        CancelCounter(boolean blockCancel) {
+            release = new CountDownLatch(blockCancel ? 1 : 0);
+        }
+
+        Statement statement() {
+            return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Statement.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("cancel")) {
+                cancelling.countDown();
+                release.await();
+                cancels.incrementAndGet();
+            } else if (method.getName().equals("setQueryTimeout")) {
+                queryTimeout = (Integer) args[0];
+            }
+            return null;
+        }
+    }
+
+    @Test
+    public void testDisarmBeforeDeadline() throws Exception {
+        CancelCounter counter = new CancelCounter(false);
+        Statement statement = counter.statement();
+        Deadline.Cancellation cancellation = Deadline.after(50, TimeUnit.MILLISECONDS).arm(statement);
+        assertEquals(1, counter.queryTimeout);
+        cancellation.disarm();
+        assertEquals(0, counter.queryTimeout);
+
+        Thread.sleep(150);
+        assertEquals(0, counter.cancels.get());
+        assertFalse(cancellation.isFired());
+    }
+
+    @Test
+    public void testCancelAtDeadline() throws Exception {
+        CancelCounter counter = new CancelCounter(false);
+        Statement statement = counter.statement();
+        Deadline.Cancellation cancellation = Deadline.after(20, TimeUnit.MILLISECONDS).arm(statement);
+        assertTrue(counter.cancelling.await(5, TimeUnit.SECONDS));
+        assertTrue(cancellation.isFired());
+        cancellation.disarm();
+        assertEquals(1, counter.cancels.get());
+    }
+
+    @Test
+    public void testDisarmWaitsForRunningCancel() throws Exception {
+        final CancelCounter counter = new CancelCounter(true);
+        Statement statement = counter.statement();
+        Deadline.Cancellation cancellation = Deadline.after(10, TimeUnit.MILLISECONDS).arm(statement);
+        assertTrue(counter.cancelling.await(5, TimeUnit.SECONDS));
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    // release anyway
+                }
+                counter.release.countDown();
+            }
+        }).start();
+        cancellation.disarm();
+        // the cancel has returned, it cannot reach a later execution
+        assertEquals(1, counter.cancels.get());
+        assertTrue(cancellation.isFired());
+    }
+
+    @Test
+    public void testDeadlineFiresDuringDisarm() throws Exception {
+        int rounds = 500;
+        CancelCounter[] counters = new CancelCounter[rounds];
+        int[] cancelsAtDisarm = new int[rounds];
+        for (int i = 0; i < rounds; i++) {
+            counters[i] = new CancelCounter(false);
+            Statement statement = counters[i].statement();
+            long nanos = TimeUnit.MICROSECONDS.toNanos(100 + i % 50 * 20);
+            Deadline.Cancellation cancellation;
+            try {
+                cancellation = Deadline.after(nanos, TimeUnit.NANOSECONDS).arm(statement);
+            } catch (Sql2oException e) {
+                // a pause of this thread let the deadline pass before it was armed
+                continue;
+            }
+            // disarm around the moment the deadline fires
+            long end = System.nanoTime() + nanos;
+            while (System.nanoTime() - end < 0) {
+                Thread.yield();
+            }
+            cancellation.disarm();
+            cancelsAtDisarm[i] = counters[i].cancels.get();
+            assertEquals(cancellation.isFired() ? 1 : 0, cancelsAtDisarm[i]);
+            // a second disarm returns at once
+            cancellation.disarm();
+        }
+        Thread.sleep(100);
+        for (int i = 0; i < rounds; i++) {
+            // no cancel arrives after disarm returned
+            assertEquals(cancelsAtDisarm[i], counters[i].cancels.get());
+        }
+    }
+
+    @Test
+    public void testBlockedCancelDoesNotDelayOthers() throws Exception {
+        CancelCounter blocked = new CancelCounter(true);
+        Statement firstStatement = blocked.statement();
+        Deadline.Cancellation first = Deadline.after(10, TimeUnit.MILLISECONDS).arm(firstStatement);
+        assertTrue(blocked.cancelling.await(5, TimeUnit.SECONDS));
+        try {
+            CancelCounter counter = new CancelCounter(false);
+            Statement secondStatement = counter.statement();
+            Deadline.Cancellation second = Deadline.after(10, TimeUnit.MILLISECONDS).arm(secondStatement);
+            assertTrue(counter.cancelling.await(5, TimeUnit.SECONDS));
+            second.disarm();
+            assertEquals(1, counter.cancels.get());
+        } finally {
+            blocked.release.countDown();
+        }
+        first.disarm();
+        assertEquals(1, blocked.cancels.get());
+    }
+
+    @Test
+    public void testExpiredDeadline() {
+        Deadline deadline = Deadline.after(-1, TimeUnit.MILLISECONDS);
+        assertTrue(deadline.isExpired());
+        try {
+            deadline.arm(new CancelCounter(false).statement());
+            fail("an expired deadline cannot be armed");
+        } catch (Sql2oException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testEnterKeepsEarliest() {
+        Deadline early = Deadline.after(1, TimeUnit.SECONDS);
+        Deadline.Scope outer = Deadline.enter(early);
+        try {
+            Deadline.Scope inner = Deadline.enter(10, TimeUnit.SECONDS);
+            assertTrue(Deadline.current() == early);
+            inner.close();
+            assertTrue(Deadline.current() == early);
+        } finally {
+            outer.close();
+        }
+        assertTrue(Deadline.current() == null);
+    }
+
+}
@@ -0,0 +1,228 @@
+package org.sql2o;
+
+import org.junit.Test;
+import org.sql2o.quirks.NoQuirks;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+public class QueryTest {
+
+    private static final String UPDATE = "update person set age = :p1 where name = :p2";
+
+    /**
+     * A data source whose statements record the parameters they had at each execution.
+     */
+    private static final class RecordingDatabase implements InvocationHandler {
+        final List<Map<Integer, Object>> executions = new ArrayList<Map<Integer, Object>>();
+        final List<List<Map<Integer, Object>>> batches = new ArrayList<List<Map<Integer, Object>>>();
+        int connections;
+        int statements;
+
+        DataSource dataSource() {
+            return proxy(DataSource.class, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("getConnection")) {
+                connections++;
+                return proxy(java.sql.Connection.class, new InvocationHandler() {
+                    boolean closed;
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("close")) {
+                            closed = true;
+                        } else if (method.getName().equals("isClosed")) {
+                            return closed;
+                        } else if (method.getName().equals("prepareStatement")) {
+                            statements++;
+                            return proxy(java.sql.PreparedStatement.class, new Statement());
+                        }
+                        return method.getName().equals("getAutoCommit") ? Boolean.TRUE : defaultValue(method);
+                    }
+                });
+            }
+            return defaultValue(method);
+        }
+
+        private final class Statement implements InvocationHandler {
+            final Map<Integer, Object> parameters = new TreeMap<Integer, Object>();
+            final List<Map<Integer, Object>> batch = new ArrayList<Map<Integer, Object>>();
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer
+                        && !name.equals("setQueryTimeout")) {
+                    parameters.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                } else if (name.equals("clearParameters")) {
+                    parameters.clear();
+                } else if (name.equals("addBatch")) {
+                    batch.add(new TreeMap<Integer, Object>(parameters));
+                } else if (name.equals("executeBatch")) {
+                    batches.add(new ArrayList<Map<Integer, Object>>(batch));
+                    batch.clear();
+                    return new int[0];
+                } else if (name.equals("executeUpdate")) {
+                    executions.add(new TreeMap<Integer, Object>(parameters));
+                    return 1;
+                }
+                return defaultValue(method);
+            }
+        }
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(QueryTest.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return Boolean.FALSE;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    private static Map<Integer, Object> values(Object... values) {
+        Map<Integer, Object> map = new TreeMap<Integer, Object>();
+        for (int i = 0; i < values.length; i++) {
+            map.put(i + 1, values[i]);
+        }
+        return map;
+    }
+
+    @Test
+    public void testExecuteTwice() {
+        RecordingDatabase database = new RecordingDatabase();
+        Connection connection = new Sql2o(database.dataSource(), new NoQuirks()).open();
+        Query query = connection.createQuery(UPDATE, false).withParams(30, "alice");
+        query.executeUpdate();
+        query.executeUpdate();
+        query.close();
+        connection.close();
+
+        assertEquals(1, database.statements);
+        assertEquals(2, database.executions.size());
+        assertEquals(values(30, "alice"), database.executions.get(0));
+        assertEquals(values(30, "alice"), database.executions.get(1));
+    }
+
+    @Test
+    public void testExecuteTwiceOnPreparedAgain() {
+        RecordingDatabase database = new RecordingDatabase();
+        // returns the JDBC connection after each update, the statement is prepared again
+        Connection connection = new Sql2o(database.dataSource(), new NoQuirks()).openLazy();
+        Query query = connection.createQuery(UPDATE, false).withParams(30, "alice");
+        query.executeUpdate();
+        query.executeUpdate();
+        query.close();
+
+        assertEquals(2, database.connections);
+        assertEquals(2, database.statements);
+        assertEquals(values(30, "alice"), database.executions.get(0));
+        assertEquals(values(30, "alice"), database.executions.get(1));
+    }
+
+    @Test
+    public void testExternallyClosedConnectionIsReplaced() throws Exception {
+        RecordingDatabase database = new RecordingDatabase();
+        Connection connection = new Sql2o(database.dataSource(), new NoQuirks()).open();
+        connection.getJdbcConnection().close();
+        Query query = connection.createQuery(UPDATE, false).withParams(30, "alice");
+        query.executeUpdate();
+        query.close();
+        connection.close();
+
+        assertEquals(2, database.connections);
+        assertEquals(1, database.executions.size());
+    }
+
+    @Test
+    public void testNewParamsReplaceOld() {
+        RecordingDatabase database = new RecordingDatabase();
+        Connection connection = new Sql2o(database.dataSource(), new NoQuirks()).open();
+        Query query = connection.createQuery(UPDATE, false).withParams(30, "alice");
+        query.executeUpdate();
+        query.withParams(40, "bob").executeUpdate();
+        query.close();
+        connection.close();
+
+        assertEquals(values(30, "alice"), database.executions.get(0));
+        assertEquals(values(40, "bob"), database.executions.get(1));
+    }
+
+    @Test
+    public void testAddParameterAfterWithParamsWins() {
+        RecordingDatabase database = new RecordingDatabase();
+        Connection connection = new Sql2o(database.dataSource(), new NoQuirks()).open();
+        Query query = connection.createQuery(UPDATE, false).withParams(30, "alice").addParameter("p1", 40);
+        query.executeUpdate();
+        query.close();
+        connection.close();
+
+        assertEquals(values(40, "alice"), database.executions.get(0));
+    }
+
+    @Test
+    public void testWithParamsAfterAddParameterWins() {
+        RecordingDatabase database = new RecordingDatabase();
+        Connection connection = new Sql2o(database.dataSource(), new NoQuirks()).open();
+        Query query = connection.createQuery(UPDATE, false).addParameter("p1", 40).withParams(30, "alice");
+        query.executeUpdate();
+        query.close();
+        connection.close();
+
+        assertEquals(values(30, "alice"), database.executions.get(0));
+    }
+
+    @Test
+    public void testArrayParameterAfterWithParams() {
+        RecordingDatabase database = new RecordingDatabase();
+        Connection connection = new Sql2o(database.dataSource(), new NoQuirks()).open();
+        // the array renumbers p3 from the third to the fourth position
+        Query query = connection.createQuery("update person set age = :p1 where name in (:p2) and id = :p3", false)
+                .withParams(30, "alice", 7)
+                .addParameter("p2", "alice", "bob");
+        query.executeUpdate();
+        query.close();
+        connection.close();
+
+        assertEquals(values(30, "alice", "bob", 7), database.executions.get(0));
+    }
+
+    @Test
+    public void testBatchRows() {
+        RecordingDatabase database = new RecordingDatabase();
+        Connection connection = new Sql2o(database.dataSource(), new NoQuirks()).open();
+        Query query = connection.createQuery(UPDATE, false);
+        query.withParams(30, "alice").addToBatch();
+        query.withParams(40, "bob").addToBatch();
+        query.executeBatch();
+        query.close();
+        connection.close();
+
+        assertEquals(1, database.batches.size());
+        List<Map<Integer, Object>> rows = database.batches.get(0);
+        assertEquals(2, rows.size());
+        assertEquals(values(30, "alice"), rows.get(0));
+        assertEquals(values(40, "bob"), rows.get(1));
+    }
+
+}
@@ -0,0 +1,235 @@
+package org.sql2o;
+
+import org.junit.Test;
+import org.sql2o.quirks.NoQuirks;
+import org.sql2o.reflection.PojoMetadata;
+import org.sql2o.tools.FingerprintCache;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RowMapperGeneratorTest {
+
+    public static class Row {
+        public int id;
+        public long version;
+        public double score;
+        public String name;
+        public Integer age;
+        public int missing;
+        public Long parent;
+        public BigDecimal amount;
+        private long created;
+        private String note;
+        private float ratio;
+        public float ratioField;
+
+        public long getCreated() {
+            return created;
+        }
+
+        public String getNote() {
+            return note;
+        }
+
+        public float getRatio() {
+            return ratio;
+        }
+
+        public void setRatio(float ratio) {
+            this.ratio = ratio;
+        }
+    }
+
+    // not public, the generator cannot reference it and the generic handler maps it
+    static class HiddenRow extends Row {
+    }
+
+    public static class BoxedRow {
+        public Integer id;
+        public Long version;
+    }
+
+    private static final String[] LABELS = {
+            "id", "version", "score", "name", "age", "missing", "parent", "amount", "created", "note", "ratio", "ratioField"
+    };
+
+    private static final int[] TYPES = {
+            Types.INTEGER, Types.BIGINT, Types.DOUBLE, Types.VARCHAR, Types.INTEGER, Types.INTEGER, Types.BIGINT,
+            Types.DECIMAL, Types.BIGINT, Types.VARCHAR, Types.REAL, Types.REAL
+    };
+
+    private static final Object[] VALUES = {
+            7, 1234567890123L, 2.5, "alice", 42, null, null, new BigDecimal("19.90"), 1500000000000L, null, 0.75f, 1.25f
+    };
+
+    private static ResultSetMetaData metaData(final String[] labels, final int[] types) {
+        return proxy(ResultSetMetaData.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("getColumnCount")) {
+                    return labels.length;
+                }
+                int column = (Integer) args[0];
+                if (name.equals("getColumnType")) {
+                    return types[column - 1];
+                }
+                return labels[column - 1];
+            }
+        });
+    }
+
+    /**
+     * A result set of one row, with the JDBC conversions of the typed getters.
+     */
+    private static ResultSet resultSet(final Object[] values) {
+        return proxy(ResultSet.class, new InvocationHandler() {
+            boolean wasNull;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("wasNull")) {
+                    return wasNull;
+                }
+                Object value = values[(Integer) args[0] - 1];
+                wasNull = value == null;
+                Class<?> type = method.getReturnType();
+                if (type == int.class) {
+                    return value == null ? 0 : ((Number) value).intValue();
+                }
+                if (type == long.class) {
+                    return value == null ? 0L : ((Number) value).longValue();
+                }
+                if (type == double.class) {
+                    return value == null ? 0.0 : ((Number) value).doubleValue();
+                }
+                if (type == float.class) {
+                    return value == null ? 0.0f : ((Number) value).floatValue();
+                }
+                if (type == String.class) {
+                    return value == null ? null : value.toString();
+                }
+                return value;
+            }
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(RowMapperGeneratorTest.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static <T> ResultSetHandler<T> handler(Class<T> type) throws Exception {
+        PojoMetadata metadata = new PojoMetadata(type, false, false, Collections.<String, String>emptyMap(), true);
+        return new DefaultResultSetHandlerFactory<T>(metadata, new NoQuirks()).newResultSetHandler(metaData(LABELS, TYPES));
+    }
+
+    @Test
+    public void testGeneratedMatchesGeneric() throws Exception {
+        ResultSetHandler<Row> generated = handler(Row.class);
+        ResultSetHandler<HiddenRow> generic = handler(HiddenRow.class);
+        assertTrue(generated instanceof FusedResultSetHandler);
+        assertFalse(generic instanceof FusedResultSetHandler);
+
+        Row expected = generic.handle(resultSet(VALUES));
+        Row actual = generated.handle(resultSet(VALUES));
+        assertEquals(Row.class, actual.getClass());
+        for (Field field : Row.class.getDeclaredFields()) {
+            field.setAccessible(true);
+            assertEquals(field.getName(), field.get(expected), field.get(actual));
+        }
+
+        assertEquals(7, actual.id);
+        assertEquals(1234567890123L, actual.version);
+        assertEquals(2.5, actual.score, 0.0);
+        assertEquals("alice", actual.name);
+        assertEquals(Integer.valueOf(42), actual.age);
+        assertEquals(0, actual.missing);
+        assertNull(actual.parent);
+        assertEquals(new BigDecimal("19.90"), actual.amount);
+        assertEquals(1500000000000L, actual.getCreated());
+        assertNull(actual.getNote());
+        assertEquals(0.75f, actual.getRatio(), 0.0f);
+        assertEquals(1.25f, actual.ratioField, 0.0f);
+    }
+
+    @Test
+    public void testGeneratedHandlerMapsEachRow() throws Exception {
+        ResultSetHandler<Row> generated = handler(Row.class);
+        Object[] values = VALUES.clone();
+        values[0] = 8;
+        values[3] = null;
+        Row first = generated.handle(resultSet(VALUES));
+        Row second = generated.handle(resultSet(values));
+        assertTrue(first != second);
+        assertEquals(7, first.id);
+        assertEquals("alice", first.name);
+        assertEquals(8, second.id);
+        assertNull(second.name);
+    }
+
+    @Test
+    public void testGeneratedClassSharedByLayout() throws Exception {
+        ResultSetHandler<Row> first = handler(Row.class);
+        // another metadata, the columns still inline to the same fields
+        PojoMetadata metadata = new PojoMetadata(Row.class, false, false, Collections.singletonMap("unused", "id"), true);
+        ResultSetHandler<Row> second = new DefaultResultSetHandlerFactory<Row>(metadata, new NoQuirks())
+                .newResultSetHandler(metaData(LABELS, TYPES));
+        assertTrue(first != second);
+        assertEquals(first.getClass(), second.getClass());
+        assertEquals(7, second.handle(resultSet(VALUES)).id);
+
+        String[] labels = LABELS.clone();
+        labels[0] = "missing";
+        labels[5] = "id";
+        ResultSetHandler<Row> swapped = new DefaultResultSetHandlerFactory<Row>(metadata, new NoQuirks())
+                .newResultSetHandler(metaData(labels, TYPES));
+        assertFalse(first.getClass() == swapped.getClass());
+        Row row = swapped.handle(resultSet(VALUES));
+        assertEquals(7, row.missing);
+        assertEquals(0, row.id);
+    }
+
+    @Test
+    public void testFallbackWithoutInlinableColumns() throws Exception {
+        PojoMetadata metadata = new PojoMetadata(BoxedRow.class, false, false, Collections.<String, String>emptyMap(), true);
+        ResultSetHandler<BoxedRow> handler = new DefaultResultSetHandlerFactory<BoxedRow>(metadata, new NoQuirks())
+                .newResultSetHandler(metaData(new String[]{"id", "version"}, new int[]{Types.INTEGER, Types.BIGINT}));
+        assertFalse(handler instanceof FusedResultSetHandler);
+
+        BoxedRow row = handler.handle(resultSet(new Object[]{3, null}));
+        assertEquals(Integer.valueOf(3), row.id);
+        assertNull(row.version);
+    }
+
+    @Test
+    public void testCachedHandlerCheckedAgainstColumns() throws Exception {
+        PojoMetadata metadata = new PojoMetadata(BoxedRow.class, false, false, Collections.<String, String>emptyMap(), true);
+        DefaultResultSetHandlerFactory<BoxedRow> factory = new DefaultResultSetHandlerFactory<BoxedRow>(metadata, new NoQuirks());
+        FingerprintCache<Object, Object> cache = new FingerprintCache<Object, Object>();
+        int[] types = {Types.INTEGER, Types.BIGINT};
+
+        ResultSetHandler<BoxedRow> first = factory.newResultSetHandler("select * from row", metaData(new String[]{"id", "version"}, types), cache);
+        assertTrue(first == factory.newResultSetHandler("select * from row", metaData(new String[]{"id", "version"}, types), cache));
+
+        // as many columns, in another order
+        ResultSetHandler<BoxedRow> swapped = factory.newResultSetHandler("select * from row", metaData(new String[]{"version", "id"}, types), cache);
+        BoxedRow row = swapped.handle(resultSet(new Object[]{5L, 3}));
+        assertEquals(Integer.valueOf(3), row.id);
+        assertEquals(Long.valueOf(5L), row.version);
+    }
+
+}